@@ -0,0 +1,72 @@
+package org.example.benchmark;
+
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.example.shared.Vector3;
+import org.example.shared.VoxelWFCParameters;
+import org.example.view.ModelImporterExporter;
+import org.example.view.VoxelViewModel;
+
+/**
+ * One of the bundled input models together with the parameters stored in its {@code _params.json}.
+ * <p>
+ * The models are read from {@code ../src/main/resources/inputmodels}, relative to the benchmark module. Another
+ * directory can be set with {@code -Dinputmodels=<path>}.
+ */
+public class BundledInput {
+
+  public static final String DIRECTORY_PROPERTY = "inputmodels";
+
+  private final Path file;
+  private final VoxelViewModel model;
+  private final VoxelWFCParameters parameters;
+
+  private BundledInput(Path file, VoxelViewModel model, VoxelWFCParameters parameters) {
+    this.file = file;
+    this.model = model;
+    this.parameters = parameters;
+  }
+
+  /**
+   * @param name file name of the model without extension, e.g. "river"
+   */
+  public static BundledInput load(String name) throws IOException {
+    Path file = directory().resolve(name + ".vox");
+    if (!Files.isRegularFile(file)) {
+      throw new IOException("Input model not found: " + file.toAbsolutePath());
+    }
+    VoxelWFCParameters parameters;
+    try (Reader reader = Files.newBufferedReader(directory().resolve(name + "_params.json"))) {
+      parameters = new Gson().fromJson(reader, VoxelWFCParameters.class);
+    }
+    return new BundledInput(file, ModelImporterExporter.loadVoxelModelFromFile(file.toString()), parameters);
+  }
+
+  public static Path directory() {
+    return Paths.get(System.getProperty(DIRECTORY_PROPERTY, "../src/main/resources/inputmodels"));
+  }
+
+  public Path getFile() {
+    return file;
+  }
+
+  public int[][][] getVoxelData() {
+    return model.getVoxelData();
+  }
+
+  public int[] getPalette() {
+    return model.getPalette();
+  }
+
+  public VoxelWFCParameters getParameters() {
+    return parameters;
+  }
+
+  public Vector3<Integer> getOutputSize() {
+    return new Vector3<>(parameters.outputSizeX, parameters.outputSizeY, parameters.outputSizeZ);
+  }
+}
@@ -0,0 +1,101 @@
+package org.example.model;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.example.benchmark.BundledInput;
+import org.example.shared.Vector3;
+import org.example.shared.VoxelWFCParameters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Hot paths of {@link VoxelWfcModel} for every bundled input with the parameters of its {@code _params.json}.
+ * <p>
+ * The single step benchmarks work on the wave right after border propagation. {@link #propagate()} observes the cell
+ * with the lowest entropy and rolls the observation back afterwards, so every invocation propagates the same front.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SolverBenchmark {
+
+  @Param({"8x8x8", "river", "structure", "tower_bridge", "tower_complex"})
+  private String input;
+
+  @Param({"1", "2", "3"})
+  private long seed;
+
+  private int[][][] voxels;
+  private VoxelWFCParameters parameters;
+  private CompiledRuleSet ruleSet;
+  private VoxelWfcModel solveModel;
+  private VoxelWfcModel stepModel;
+  private int cell;
+  private int pattern;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    BundledInput bundledInput = BundledInput.load(input);
+    voxels = bundledInput.getVoxelData();
+    parameters = bundledInput.getParameters();
+    ruleSet = CompiledRuleSet.compile(
+        voxels,
+        parameters.patternSize,
+        parameters.rotation,
+        parameters.avoidEmptyPattern
+    );
+    Vector3<Integer> outputSize = bundledInput.getOutputSize();
+    solveModel = new VoxelWfcModel(ruleSet, outputSize, seed);
+
+    stepModel = new VoxelWfcModel(ruleSet, outputSize, seed);
+    if (!stepModel.prepareWave()) {
+      throw new IllegalStateException("Border constraints of " + input + " are contradictory");
+    }
+    cell = stepModel.getLowestEntropyCell();
+    pattern = stepModel.selectRandomPattern(cell);
+  }
+
+  @Benchmark
+  public CompiledRuleSet extractPatterns() {
+    return CompiledRuleSet.compile(voxels, parameters.patternSize, parameters.rotation, parameters.avoidEmptyPattern);
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public int[][][] solve() {
+    solveModel.setSeed(seed);
+    return solveModel.solve();
+  }
+
+  @Benchmark
+  public boolean propagate() {
+    boolean success = stepModel.observeAndPropagate(cell, pattern);
+    stepModel.rollbackObservation();
+    return success;
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public int getLowestEntropyCell() {
+    return stepModel.getLowestEntropyCell();
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public int selectRandomPattern() {
+    return stepModel.selectRandomPattern(cell);
+  }
+}
@@ -0,0 +1,133 @@
+package org.example.voxparser;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.example.benchmark.BundledInput;
+import org.example.shared.Vector3;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing with {@link VoxReader} and writing with {@link VoxSerializer}, for the bundled input models and for generated
+ * terrain models of {@code generated-<size>} voxels per side. Files are parsed from memory, so the results do not
+ * include disk reads.
+ * <p>
+ * Besides the time per file every result reports {@code voxels}, the number of voxels processed per second. Dividing
+ * {@code gc.alloc.rate} by it gives the bytes allocated per voxel.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class VoxBenchmark {
+
+  private static final String GENERATED = "generated-";
+
+  @Param({"8x8x8", "river", "structure", "tower_bridge", "tower_complex", "generated-128", "generated-256"})
+  private String model;
+
+  private byte[] fileContent;
+  private VoxModel voxModel;
+  private int[] palette;
+  private File outputFile;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    outputFile = File.createTempFile("vox-benchmark", ".vox");
+    if (model.startsWith(GENERATED)) {
+      voxModel = generateTerrain(Integer.parseInt(model.substring(GENERATED.length())));
+      palette = new int[256];
+      for (int i = 0; i < palette.length; i++) {
+        palette[i] = 0xFF000000 | i * 0x010101;
+      }
+      new VoxSerializer().writeToVox(voxModel, palette, outputFile);
+      fileContent = Files.readAllBytes(outputFile.toPath());
+    } else {
+      fileContent = Files.readAllBytes(BundledInput.directory().resolve(model + ".vox"));
+    }
+    try (VoxReader reader = new VoxReader(new ByteArrayInputStream(fileContent))) {
+      VoxFile voxFile = reader.read();
+      voxModel = voxFile.getModels()[0];
+      palette = voxFile.getPalette();
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(outputFile.toPath());
+  }
+
+  @Benchmark
+  public VoxFile parse(VoxelCounter counter) throws IOException {
+    try (VoxReader reader = new VoxReader(new ByteArrayInputStream(fileContent))) {
+      VoxFile voxFile = reader.read();
+      counter.voxels += voxModel.getVoxels().length;
+      return voxFile;
+    }
+  }
+
+  @Benchmark
+  public File write(VoxelCounter counter) {
+    new VoxSerializer().writeToVox(voxModel, palette, outputFile);
+    counter.voxels += voxModel.getVoxels().length;
+    return outputFile;
+  }
+
+  /**
+   * Terrain of stacked colour layers whose height varies between a quarter and three quarters of the size.
+   */
+  private static VoxModel generateTerrain(int size) {
+    int[] heights = new int[size * size];
+    int voxelCount = 0;
+    for (int x = 0; x < size; x++) {
+      for (int y = 0; y < size; y++) {
+        double wave = Math.sin(x * 0.07) + Math.cos(y * 0.05) + 0.5 * Math.sin((x + y) * 0.13);
+        int height = (int) (size / 2 + wave / 2.5 * size / 4);
+        heights[x + y * size] = height;
+        voxelCount += height;
+      }
+    }
+    Voxel[] voxels = new Voxel[voxelCount];
+    int i = 0;
+    for (int x = 0; x < size; x++) {
+      for (int y = 0; y < size; y++) {
+        for (int z = 0; z < heights[x + y * size]; z++) {
+          voxels[i++] = new Voxel(new Vector3<>((byte) x, (byte) y, (byte) z), (byte) (1 + z * 8 / size));
+        }
+      }
+    }
+    return new VoxModel(new Vector3<>(size, size, size), voxels);
+  }
+
+  /**
+   * Voxels processed, reported as an additional throughput metric.
+   */
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class VoxelCounter {
+
+    public long voxels;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      voxels = 0;
+    }
+  }
+}
@@ -2,7 +2,9 @@ module org.example {
   requires javafx.controls;
   requires javafx.fxml;
   requires org.joml;
-  requires com.google.gson;
+  requires transitive com.google.gson;
+  requires jdk.management;
+  requires jdk.jfr;
 
   opens org.example to javafx.fxml;
   exports org.example.view;
@@ -0,0 +1,229 @@
+package org.example.cli;
+
+import com.google.gson.Gson;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import org.example.model.CompiledRuleSet;
+import org.example.model.RuleSetFile;
+import org.example.model.VoxelWfcModel;
+import org.example.shared.CancellationToken;
+import org.example.shared.SolveResult;
+import org.example.shared.Vector3;
+import org.example.shared.VoxelWFCParameters;
+import org.example.view.ModelImporterExporter;
+import org.example.view.VoxelViewModel;
+
+/**
+ * Headless entry point that generates a range of seeds for one input model on a fixed number of threads and writes
+ * every solution as .vox file.
+ * <p>
+ * Usage: {@code BatchGenerator <input.vox> <params.json> <firstSeed> <lastSeed> [threads] [outputDir] [timeoutMillis]}
+ */
+public class BatchGenerator {
+
+  private static final String USAGE =
+      "Usage: BatchGenerator <input.vox> <params.json> <firstSeed> <lastSeed> [threads] [outputDir] [timeoutMillis]";
+
+  private final Path input;
+  private final VoxelWFCParameters parameters;
+  private final long firstSeed;
+  private final long lastSeed;
+  private final int threads;
+  private final Path outputDir;
+  private final Duration timeout;
+
+  /**
+   * @param firstSeed first seed to solve
+   * @param lastSeed last seed to solve, at most {@link Integer#MAX_VALUE} seeds after firstSeed
+   * @throws IllegalArgumentException if the seed range is empty or too large or threads is not positive
+   */
+  public BatchGenerator(
+      Path input,
+      VoxelWFCParameters parameters,
+      long firstSeed,
+      long lastSeed,
+      int threads,
+      Path outputDir,
+      Duration timeout
+  ) {
+    //the difference overflows to a negative value for ranges of more than Long.MAX_VALUE seeds
+    if (lastSeed < firstSeed || lastSeed - firstSeed < 0 || lastSeed - firstSeed >= Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(
+          "Seed range " + firstSeed + ".." + lastSeed + " must contain 1 to " + Integer.MAX_VALUE + " seeds"
+      );
+    }
+    if (threads < 1) {
+      throw new IllegalArgumentException("Thread count must be positive: " + threads);
+    }
+    this.input = input;
+    this.parameters = parameters;
+    this.firstSeed = firstSeed;
+    this.lastSeed = lastSeed;
+    this.threads = threads;
+    this.outputDir = outputDir;
+    this.timeout = timeout;
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    if (args.length < 4) {
+      System.err.println(USAGE);
+      System.exit(2);
+    }
+    VoxelWFCParameters parameters;
+    try (Reader reader = new FileReader(args[1])) {
+      parameters = new Gson().fromJson(reader, VoxelWFCParameters.class);
+    }
+    Path input = Paths.get(args[0]);
+    BatchGenerator generator;
+    try {
+      generator = new BatchGenerator(
+          input,
+          parameters,
+          Long.parseLong(args[2]),
+          Long.parseLong(args[3]),
+          args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors(),
+          args.length > 5 ? Paths.get(args[5]) : Paths.get("output"),
+          args.length > 6 ? Duration.ofMillis(Long.parseLong(args[6])) : null
+      );
+    } catch (IllegalArgumentException e) {
+      //also covers NumberFormatException of malformed numbers
+      System.err.println(e.getMessage());
+      System.err.println(USAGE);
+      System.exit(2);
+      return;
+    }
+    System.out.println(generator.run());
+  }
+
+  /**
+   * Solve all seeds. Every worker thread keeps one model and reuses its wave for all seeds it solves.
+   *
+   * @return throughput summary
+   */
+  public Summary run() throws IOException, InterruptedException {
+    Files.createDirectories(outputDir);
+    VoxelViewModel inputModel = ModelImporterExporter.loadVoxelModelFromFile(input.toString());
+    CompiledRuleSet ruleSet = RuleSetFile.loadOrCompile(
+        input,
+        parameters.patternSize,
+        parameters.getExtractionMode(),
+        parameters.getSymmetry(),
+        parameters.avoidEmptyPattern,
+        inputModel.getVoxelData()
+    );
+    Vector3<Integer> outputSize =
+        new Vector3<>(parameters.outputSizeX, parameters.outputSizeY, parameters.outputSizeZ);
+    String name = input.getFileName().toString().replace(".vox", "");
+
+    int solveCount = Math.toIntExact(lastSeed - firstSeed + 1);
+    long[] latencies = new long[solveCount];
+    boolean[] solved = new boolean[solveCount];
+    AtomicLong nextSeed = new AtomicLong(firstSeed);
+
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    long start = System.nanoTime();
+    try {
+      List<Future<?>> workers = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        workers.add(pool.submit(() -> {
+          VoxelWfcModel model = new VoxelWfcModel(ruleSet, outputSize, firstSeed);
+          for (long seed = nextSeed.getAndIncrement(); seed <= lastSeed; seed = nextSeed.getAndIncrement()) {
+            model.setSeed(seed);
+            long solveStart = System.nanoTime();
+            SolveResult result = model.solve(new CancellationToken(), timeout);
+            int index = (int) (seed - firstSeed);
+            latencies[index] = System.nanoTime() - solveStart;
+            solved[index] = result.isSolved();
+            if (result.isSolved()) {
+              File file = outputDir.resolve(name + "_" + seed + ".vox").toFile();
+              ModelImporterExporter.writeVoxelModelToFile(result.getOutput(), inputModel.getPalette(), file);
+            }
+          }
+          return null;
+        }));
+      }
+      for (Future<?> worker : workers) {
+        worker.get();
+      }
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Batch worker failed", e.getCause());
+    } finally {
+      pool.shutdownNow();
+    }
+    long elapsed = System.nanoTime() - start;
+
+    int solvedCount = 0;
+    for (boolean success : solved) {
+      if (success) {
+        solvedCount++;
+      }
+    }
+    return new Summary(solveCount, solvedCount, elapsed, latencies);
+  }
+
+  /**
+   * Throughput and latency of a batch run.
+   */
+  public static class Summary {
+
+    private final int solves;
+    private final int solved;
+    private final long elapsedNanos;
+    private final long[] sortedLatencies;
+
+    Summary(int solves, int solved, long elapsedNanos, long[] latencies) {
+      this.solves = solves;
+      this.solved = solved;
+      this.elapsedNanos = elapsedNanos;
+      this.sortedLatencies = latencies.clone();
+      Arrays.sort(sortedLatencies);
+    }
+
+    public double getSolvesPerSecond() {
+      return solves / (elapsedNanos / 1e9);
+    }
+
+    public double getSuccessRate() {
+      return solves == 0 ? 0 : (double) solved / solves;
+    }
+
+    /**
+     * @param percentile in [0, 100]
+     * @return latency of a single solve in milliseconds
+     */
+    public double getLatencyMillis(double percentile) {
+      if (sortedLatencies.length == 0) {
+        return 0;
+      }
+      int index = (int) Math.ceil(percentile / 100 * sortedLatencies.length) - 1;
+      return sortedLatencies[Math.max(0, Math.min(index, sortedLatencies.length - 1))] / 1e6;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "%d solves in %.2fs: %.1f solves/s, success rate %.1f%%, latency p50 %.1fms, p99 %.1fms",
+          solves,
+          elapsedNanos / 1e9,
+          getSolvesPerSecond(),
+          getSuccessRate() * 100,
+          getLatencyMillis(50),
+          getLatencyMillis(99)
+      );
+    }
+  }
+}
@@ -0,0 +1,81 @@
+package org.example.model;
+
+import org.example.shared.CancellationToken;
+import org.example.shared.SolveResult.Status;
+
+/**
+ * Decides whether a running solve has to stop because it was cancelled, its thread was interrupted or its deadline
+ * passed. Reading the clock is comparatively expensive, so {@link #poll()} only checks every few calls and can be used
+ * inside propagation loops.
+ */
+class AbortCheck {
+
+  private static final int POLL_INTERVAL = 256;
+
+  private volatile boolean cancelled = false;
+  private CancellationToken token = new CancellationToken();
+  private long deadline = 0;
+  private boolean hasDeadline = false;
+  private int countdown = POLL_INTERVAL;
+  private Status reason = null;
+
+  /**
+   * Start checking for a new solve.
+   *
+   * @param token token of the solve
+   * @param timeoutNanos time budget of the solve, negative -> no deadline
+   */
+  void reset(CancellationToken token, long timeoutNanos) {
+    this.token = token;
+    this.hasDeadline = timeoutNanos >= 0;
+    this.deadline = System.nanoTime() + timeoutNanos;
+    this.countdown = POLL_INTERVAL;
+    this.reason = null;
+    this.cancelled = false;
+  }
+
+  /**
+   * Cancel the running solve independent of its token. {@link #reset(CancellationToken, long)} clears the request, so
+   * it does not carry over to the next solve.
+   */
+  void cancel() {
+    this.cancelled = true;
+  }
+
+  /**
+   * Cheap check for hot loops, only every {@link #POLL_INTERVAL}th call really checks.
+   *
+   * @return true if the solve has to stop
+   */
+  boolean poll() {
+    if (reason != null) {
+      return true;
+    }
+    if (--countdown > 0) {
+      return false;
+    }
+    countdown = POLL_INTERVAL;
+    return check();
+  }
+
+  /**
+   * @return true if the solve has to stop
+   */
+  boolean check() {
+    if (reason == null) {
+      if (cancelled || token.isCancelled() || Thread.currentThread().isInterrupted()) {
+        reason = Status.CANCELLED;
+      } else if (hasDeadline && System.nanoTime() - deadline > 0) {
+        reason = Status.TIMED_OUT;
+      }
+    }
+    return reason != null;
+  }
+
+  /**
+   * @return why the solve has to stop or null if it does not
+   */
+  Status getReason() {
+    return reason;
+  }
+}
@@ -0,0 +1,98 @@
+package org.example.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Adjacency constraints compiled into one compressed-sparse-row (CSR) table per direction. The patterns allowed next to
+ * pattern p in direction d are indices[d][offsets[d][p]] ... indices[d][offsets[d][p + 1] - 1] (sorted ascending).
+ * The floor pattern (-1) is remapped to the dense index {@link #getFloorIndex()}.
+ */
+public final class AdjacencyRules {
+
+  private final int patternCount;
+  private final int[][] offsets;
+  private final int[][] indices;
+
+  AdjacencyRules(int[][] offsets, int[][] indices) {
+    this.patternCount = offsets[0].length - 1;
+    this.offsets = offsets;
+    this.indices = indices;
+  }
+
+  /**
+   * Compile the given neighbour sets.
+   *
+   * @param patternNeighbours neighbours of each pattern, the floor pattern is stored at key -1
+   * @param patternCount number of patterns without the floor pattern
+   */
+  static AdjacencyRules compile(Map<Integer, Neighbours> patternNeighbours, int patternCount) {
+    int floorIndex = patternCount;
+    int denseCount = patternCount + 1;
+    int[][] offsets = new int[Direction3D.values().length][];
+    int[][] indices = new int[Direction3D.values().length][];
+
+    for (Direction3D direction : Direction3D.values()) {
+      int d = direction.ordinal();
+      offsets[d] = new int[denseCount + 1];
+      for (int p = 0; p < denseCount; p++) {
+        Set<Integer> allowed = patternNeighbours.get(p == floorIndex ? -1 : p).neighbours.get(direction);
+        offsets[d][p + 1] = offsets[d][p] + allowed.size();
+      }
+      indices[d] = new int[offsets[d][denseCount]];
+      for (int p = 0; p < denseCount; p++) {
+        int k = offsets[d][p];
+        for (Integer q : patternNeighbours.get(p == floorIndex ? -1 : p).neighbours.get(direction)) {
+          indices[d][k++] = q == -1 ? floorIndex : q;
+        }
+        Arrays.sort(indices[d], offsets[d][p], k);
+      }
+    }
+    return new AdjacencyRules(offsets, indices);
+  }
+
+  /**
+   * @return number of dense pattern indices including the floor pattern
+   */
+  public int getPatternCount() {
+    return patternCount;
+  }
+
+  public int getFloorIndex() {
+    return patternCount - 1;
+  }
+
+  /**
+   * CSR offsets of the given direction. The internal array is returned for the propagation loops and must not be
+   * modified.
+   */
+  int[] getOffsets(int direction) {
+    return offsets[direction];
+  }
+
+  /**
+   * CSR indices of the given direction. The internal array is returned for the propagation loops and must not be
+   * modified.
+   */
+  int[] getIndices(int direction) {
+    return indices[direction];
+  }
+
+  /**
+   * @return number of patterns allowed next to the given pattern in the given direction
+   */
+  public int getNeighbourCount(int pattern, int direction) {
+    return offsets[direction][pattern + 1] - offsets[direction][pattern];
+  }
+
+  public boolean isAllowed(int pattern, int direction, int neighbour) {
+    int[] directionOffsets = offsets[direction];
+    return Arrays.binarySearch(
+        indices[direction],
+        directionOffsets[pattern],
+        directionOffsets[pattern + 1],
+        neighbour
+    ) >= 0;
+  }
+}
@@ -0,0 +1,87 @@
+package org.example.model;
+
+/**
+ * Vose's alias method for sampling a pattern proportional to its weight in O(1). The table is built once per rule set
+ * and used whenever a cell whose domain was not reduced yet is observed.
+ */
+final class AliasTable {
+
+  /**
+   * Probability to keep the column, otherwise its alias is returned.
+   */
+  private final double[] probability;
+  private final int[] alias;
+
+  /**
+   * @param weights weight of every pattern
+   * @param count number of patterns to sample from, starting at index 0
+   */
+  AliasTable(double[] weights, int count) {
+    this.probability = new double[count];
+    this.alias = new int[count];
+    double sum = 0;
+    for (int i = 0; i < count; i++) {
+      sum += weights[i];
+    }
+    if (!(sum > 0)) {
+      //no usable weights, sample uniformly
+      for (int i = 0; i < count; i++) {
+        probability[i] = 1;
+        alias[i] = i;
+      }
+      return;
+    }
+
+    double[] scaled = new double[count];
+    int[] small = new int[count];
+    int[] large = new int[count];
+    int smallSize = 0;
+    int largeSize = 0;
+    for (int i = 0; i < count; i++) {
+      scaled[i] = weights[i] * count / sum;
+      if (scaled[i] < 1) {
+        small[smallSize++] = i;
+      } else {
+        large[largeSize++] = i;
+      }
+    }
+    while (smallSize > 0 && largeSize > 0) {
+      int less = small[--smallSize];
+      int more = large[--largeSize];
+      probability[less] = scaled[less];
+      alias[less] = more;
+      scaled[more] = (scaled[more] + scaled[less]) - 1;
+      if (scaled[more] < 1) {
+        small[smallSize++] = more;
+      } else {
+        large[largeSize++] = more;
+      }
+    }
+    //what is left is 1 up to rounding errors
+    while (largeSize > 0) {
+      int i = large[--largeSize];
+      probability[i] = 1;
+      alias[i] = i;
+    }
+    while (smallSize > 0) {
+      int i = small[--smallSize];
+      probability[i] = 1;
+      alias[i] = i;
+    }
+  }
+
+  /**
+   * @param random uniformly distributed in [0, 1), its integer part selects the column and its fraction decides between
+   * the column and its alias
+   * @return sampled pattern index
+   */
+  int sample(double random) {
+    double scaled = random * probability.length;
+    int column = Math.min((int) scaled, probability.length - 1);
+    return scaled - column < probability[column] ? column : alias[column];
+  }
+
+  int size() {
+    return probability.length;
+  }
+}
@@ -0,0 +1,46 @@
+package org.example.model;
+
+/**
+ * Neighbour lookup for a grid of fixed size whose cells are packed into the index x + y * sizeX + z * sizeX * sizeY.
+ * The index offset of every direction is precomputed and a mask per cell tells which of its neighbours lie inside the
+ * grid, so finding a neighbour takes one array read and one addition instead of unpacking the coordinates.
+ */
+final class CellNeighbours {
+
+  /**
+   * Index offset of the neighbour in every direction, in {@link Direction3D} order.
+   */
+  private final int[] deltas;
+  /**
+   * Bit d is set if the neighbour of the cell in direction d is inside the grid.
+   */
+  private final byte[] masks;
+
+  CellNeighbours(int sizeX, int sizeY, int sizeZ) {
+    int layer = sizeX * sizeY;
+    this.deltas = new int[]{-1, 1, -sizeX, sizeX, layer, -layer};
+    this.masks = new byte[layer * sizeZ];
+    int cell = 0;
+    for (int z = 0; z < sizeZ; z++) {
+      for (int y = 0; y < sizeY; y++) {
+        for (int x = 0; x < sizeX; x++) {
+          int mask = 0;
+          mask |= x > 0 ? 1 << Direction3D.LEFT.ordinal() : 0;
+          mask |= x < sizeX - 1 ? 1 << Direction3D.RIGHT.ordinal() : 0;
+          mask |= y > 0 ? 1 << Direction3D.UP.ordinal() : 0;
+          mask |= y < sizeY - 1 ? 1 << Direction3D.DOWN.ordinal() : 0;
+          mask |= z < sizeZ - 1 ? 1 << Direction3D.FORWARD.ordinal() : 0;
+          mask |= z > 0 ? 1 << Direction3D.BACKWARD.ordinal() : 0;
+          masks[cell++] = (byte) mask;
+        }
+      }
+    }
+  }
+
+  /**
+   * @return index of the neighbour of a cell in the given direction or -1 if it is outside of the grid
+   */
+  int neighbour(int cell, int direction) {
+    return (masks[cell] & (1 << direction)) != 0 ? cell + deltas[direction] : -1;
+  }
+}
@@ -0,0 +1,250 @@
+package org.example.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.example.shared.Vector3;
+
+/**
+ * Patterns, frequencies and adjacency constraints extracted from an input model. A rule set is immutable after
+ * compilation, so any number of {@link VoxelWfcModel}s can solve against the same instance concurrently.
+ */
+public final class CompiledRuleSet {
+
+  private final int patternSize;
+  private final ExtractionMode extractionMode;
+  private final Symmetry symmetry;
+  private final double avoidEmptyPattern;
+  private final Vector3<Integer> inputSize;
+  private final long inputHash;
+
+  private final List<Pattern3D> patterns;
+  private final List<Double> patternFrequency;
+  private final PatternPositions patternsByPosition;
+  private final AdjacencyRules adjacency;
+  private final double[] patternWeights;
+  private final AliasTable aliasTable;
+  private final long extractionNanos;
+
+  /**
+   * Extract the tiles of an input model and compile their adjacency constraints.
+   *
+   * @param input 3D-Array of input model
+   * @param patternSize size of NxNxN patterns that should be extracted
+   * @param rotation should rotation be used
+   * @param avoidEmptyPattern how much should empty space be avoided
+   */
+  public static CompiledRuleSet compile(int[][][] input, int patternSize, boolean rotation, double avoidEmptyPattern) {
+    return compile(input, patternSize, ExtractionMode.TILED, Symmetry.of(rotation, false), avoidEmptyPattern);
+  }
+
+  /**
+   * Extract the patterns of an input model and compile their adjacency constraints.
+   *
+   * @param input 3D-Array of input model
+   * @param patternSize size of NxNxN patterns that should be extracted
+   * @param extractionMode tiles or overlapping windows
+   * @param symmetry rotated and mirrored variants of the patterns that should be added
+   * @param avoidEmptyPattern how much should empty space be avoided
+   */
+  public static CompiledRuleSet compile(
+      int[][][] input,
+      int patternSize,
+      ExtractionMode extractionMode,
+      Symmetry symmetry,
+      double avoidEmptyPattern
+  ) {
+    long start = System.nanoTime();
+    return compile(
+        input,
+        RuleSetCache.contentHash(input),
+        patternSize,
+        extractionMode,
+        symmetry,
+        avoidEmptyPattern,
+        start
+    );
+  }
+
+  /**
+   * @param inputHash {@link RuleSetCache#contentHash(int[][][])} of the input
+   * @param start {@link System#nanoTime()} when the compilation was started
+   */
+  static CompiledRuleSet compile(
+      int[][][] input,
+      long inputHash,
+      int patternSize,
+      ExtractionMode extractionMode,
+      Symmetry symmetry,
+      double avoidEmptyPattern,
+      long start
+  ) {
+    PatternExtractionEvent event = new PatternExtractionEvent();
+    event.begin();
+    CompiledRuleSet ruleSet = new CompiledRuleSet(
+        new Grid3D(input, patternSize),
+        inputHash,
+        patternSize,
+        extractionMode,
+        symmetry,
+        avoidEmptyPattern,
+        start
+    );
+    event.end();
+    if (event.shouldCommit()) {
+      event.inputHash = inputHash;
+      event.sizeX = input[0][0].length;
+      event.sizeY = input[0].length;
+      event.sizeZ = input.length;
+      event.patternSize = patternSize;
+      event.extractionMode = extractionMode.name();
+      event.symmetry = symmetry.name();
+      event.patternCount = ruleSet.patterns.size();
+      event.commit();
+    }
+    return ruleSet;
+  }
+
+  private CompiledRuleSet(
+      Grid3D input,
+      long inputHash,
+      int patternSize,
+      ExtractionMode extractionMode,
+      Symmetry symmetry,
+      double avoidEmptyPattern,
+      long start
+  ) {
+    this.patternSize = patternSize;
+    this.extractionMode = extractionMode;
+    this.symmetry = symmetry;
+    this.avoidEmptyPattern = avoidEmptyPattern;
+    this.inputSize = input.size();
+    this.inputHash = inputHash;
+
+    List<Pattern3D> patterns = new ArrayList<>();
+    List<Double> patternFrequency = new ArrayList<>();
+    if (extractionMode == ExtractionMode.OVERLAPPING) {
+      OverlappingExtraction extraction = new OverlappingExtraction(patternSize, patterns, patternFrequency);
+      extraction.extract(input, symmetry, avoidEmptyPattern);
+      this.patternsByPosition = extraction.getPatternsByPosition();
+      this.adjacency = extraction.findNeighbours();
+    } else {
+      TiledExtraction extraction = new TiledExtraction(patternSize, patterns, patternFrequency);
+      extraction.extract(input, symmetry, avoidEmptyPattern);
+      this.patternsByPosition = extraction.getPatternsByPosition();
+      this.adjacency = extraction.findNeighbours(symmetry);
+    }
+    this.patterns = Collections.unmodifiableList(patterns);
+    this.patternFrequency = Collections.unmodifiableList(patternFrequency);
+
+    this.patternWeights = new double[adjacency.getPatternCount()];
+    for (int i = 0; i < patterns.size(); i++) {
+      patternWeights[i] = patternFrequency.get(i);
+    }
+    patternWeights[adjacency.getFloorIndex()] = 1;
+    this.aliasTable = new AliasTable(patternWeights, patterns.size());
+    this.extractionNanos = System.nanoTime() - start;
+  }
+
+  /**
+   * Restore a rule set from its compiled parts, see {@link RuleSetFile}.
+   */
+  CompiledRuleSet(
+      int patternSize,
+      ExtractionMode extractionMode,
+      Symmetry symmetry,
+      double avoidEmptyPattern,
+      Vector3<Integer> inputSize,
+      long inputHash,
+      List<Pattern3D> patterns,
+      List<Double> patternFrequency,
+      PatternPositions patternsByPosition,
+      AdjacencyRules adjacency,
+      double[] patternWeights,
+      long extractionNanos
+  ) {
+    this.patternSize = patternSize;
+    this.extractionMode = extractionMode;
+    this.symmetry = symmetry;
+    this.avoidEmptyPattern = avoidEmptyPattern;
+    this.inputSize = inputSize;
+    this.inputHash = inputHash;
+    this.patterns = Collections.unmodifiableList(patterns);
+    this.patternFrequency = Collections.unmodifiableList(patternFrequency);
+    this.patternsByPosition = patternsByPosition;
+    this.adjacency = adjacency;
+    this.patternWeights = patternWeights;
+    this.aliasTable = new AliasTable(patternWeights, patterns.size());
+    this.extractionNanos = extractionNanos;
+  }
+
+  public int getPatternSize() {
+    return patternSize;
+  }
+
+  public ExtractionMode getExtractionMode() {
+    return extractionMode;
+  }
+
+  public Symmetry getSymmetry() {
+    return symmetry;
+  }
+
+  public double getAvoidEmptyPattern() {
+    return avoidEmptyPattern;
+  }
+
+  /**
+   * @return size of the input including the padding added for pattern extraction
+   */
+  public Vector3<Integer> getInputSize() {
+    return inputSize;
+  }
+
+  /**
+   * @return {@link RuleSetCache#contentHash(int[][][])} of the input the rule set was compiled from
+   */
+  public long getInputHash() {
+    return inputHash;
+  }
+
+  public List<Pattern3D> getPatterns() {
+    return patterns;
+  }
+
+  public List<Double> getPatternFrequency() {
+    return patternFrequency;
+  }
+
+  /**
+   * Pattern index at every pattern position of the input. Rotated and mirrored variants have no position of their own.
+   */
+  public PatternPositions getPatternsByPosition() {
+    return patternsByPosition;
+  }
+
+  public AdjacencyRules getAdjacencyRules() {
+    return adjacency;
+  }
+
+  /**
+   * @return time it took to extract the patterns or to load them from a {@link RuleSetFile}
+   */
+  public long getExtractionNanos() {
+    return extractionNanos;
+  }
+
+  /**
+   * Weight of every pattern of {@link #getAdjacencyRules()} including the floor. The array must not be modified.
+   */
+  double[] getPatternWeights() {
+    return patternWeights;
+  }
+
+  /**
+   * Alias table over the weights of all patterns without the floor.
+   */
+  AliasTable getAliasTable() {
+    return aliasTable;
+  }
+}
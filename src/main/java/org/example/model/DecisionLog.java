@@ -0,0 +1,171 @@
+package org.example.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.example.shared.Vector3;
+
+/**
+ * The observations of a successful solve in the order they were applied. Collapsing the same cells to the same patterns
+ * and propagating after each of them leads to the same wave, so {@link VoxelWfcModel#replay(DecisionLog)} reconstructs
+ * the output without any search. Observations that were rolled back or belong to a failed try are not part of the log.
+ * <p>
+ * A log can only be replayed with a rule set that numbers its patterns the same way, so besides the input hash it
+ * records the pattern size, extraction mode, symmetry and pattern count of the rule set.
+ * <p>
+ * File layout (little endian): magic, version, input hash, pattern size, extraction mode, symmetry, pattern count, wave
+ * size, number of observations and the observations as (cell, pattern) pairs.
+ */
+public final class DecisionLog {
+
+  public static final String EXTENSION = ".decisions";
+
+  private static final int MAGIC = 0x56574644; // "VWFD"
+  private static final int VERSION = 1;
+
+  private final long inputHash;
+  private final int patternSize;
+  private final ExtractionMode extractionMode;
+  private final Symmetry symmetry;
+  private final int patternCount;
+  private final Vector3<Integer> waveSize;
+  /**
+   * Observations stored as (cell, pattern) pairs.
+   */
+  private final int[] observations;
+
+  /**
+   * @param ruleSet rule set that was solved
+   * @param waveSize size of the wave including padding
+   * @param observations (cell, pattern) pairs, pattern indices refer to {@link VoxelWfcModel#getAdjacencyRules()}
+   */
+  DecisionLog(CompiledRuleSet ruleSet, Vector3<Integer> waveSize, int[] observations) {
+    this(
+        ruleSet.getInputHash(),
+        ruleSet.getPatternSize(),
+        ruleSet.getExtractionMode(),
+        ruleSet.getSymmetry(),
+        ruleSet.getPatterns().size(),
+        waveSize,
+        observations
+    );
+  }
+
+  private DecisionLog(
+      long inputHash,
+      int patternSize,
+      ExtractionMode extractionMode,
+      Symmetry symmetry,
+      int patternCount,
+      Vector3<Integer> waveSize,
+      int[] observations
+  ) {
+    this.inputHash = inputHash;
+    this.patternSize = patternSize;
+    this.extractionMode = extractionMode;
+    this.symmetry = symmetry;
+    this.patternCount = patternCount;
+    this.waveSize = waveSize;
+    this.observations = observations;
+  }
+
+  public long getInputHash() {
+    return inputHash;
+  }
+
+  public int getPatternSize() {
+    return patternSize;
+  }
+
+  public ExtractionMode getExtractionMode() {
+    return extractionMode;
+  }
+
+  public Symmetry getSymmetry() {
+    return symmetry;
+  }
+
+  /**
+   * @return number of patterns of the rule set without the floor
+   */
+  public int getPatternCount() {
+    return patternCount;
+  }
+
+  /**
+   * @return true if the log was recorded with a rule set extracted from the same input with the same parameters
+   */
+  public boolean matches(CompiledRuleSet ruleSet) {
+    return inputHash == ruleSet.getInputHash()
+        && patternSize == ruleSet.getPatternSize()
+        && extractionMode == ruleSet.getExtractionMode()
+        && symmetry == ruleSet.getSymmetry()
+        && patternCount == ruleSet.getPatterns().size();
+  }
+
+  /**
+   * @return size of the wave including the padding
+   */
+  public Vector3<Integer> getWaveSize() {
+    return waveSize;
+  }
+
+  /**
+   * @return number of observations
+   */
+  public int size() {
+    return observations.length / 2;
+  }
+
+  public int getCell(int observation) {
+    return observations[2 * observation];
+  }
+
+  public int getPattern(int observation) {
+    return observations[2 * observation + 1];
+  }
+
+  public void write(Path file) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(4 * 10 + 8 + 4 * observations.length).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(MAGIC);
+    buffer.putInt(VERSION);
+    buffer.putLong(inputHash);
+    buffer.putInt(patternSize);
+    buffer.putInt(extractionMode.ordinal());
+    buffer.putInt(symmetry.ordinal());
+    buffer.putInt(patternCount);
+    buffer.putInt(waveSize.getX());
+    buffer.putInt(waveSize.getY());
+    buffer.putInt(waveSize.getZ());
+    buffer.putInt(size());
+    buffer.asIntBuffer().put(observations);
+    Files.write(file, buffer.array());
+  }
+
+  public static DecisionLog read(Path file) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+    try {
+      if (buffer.getInt() != MAGIC) {
+        throw new IOException("Not a decision log: " + file);
+      }
+      int version = buffer.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported decision log version " + version + ": " + file);
+      }
+      long inputHash = buffer.getLong();
+      int patternSize = buffer.getInt();
+      ExtractionMode extractionMode = ExtractionMode.values()[buffer.getInt()];
+      Symmetry symmetry = Symmetry.values()[buffer.getInt()];
+      int patternCount = buffer.getInt();
+      Vector3<Integer> waveSize = new Vector3<>(buffer.getInt(), buffer.getInt(), buffer.getInt());
+      int[] observations = new int[2 * buffer.getInt()];
+      buffer.asIntBuffer().get(observations);
+      return new DecisionLog(inputHash, patternSize, extractionMode, symmetry, patternCount, waveSize, observations);
+    } catch (RuntimeException e) {
+      //BufferUnderflowException, NegativeArraySizeException, ... of a truncated or damaged file
+      throw new IOException("Damaged decision log: " + file, e);
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package org.example.model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Propagates changes by filtering the domain of each neighbour of a changed cell against all patterns left in it.
+ */
+class DomainFilterPropagator extends Propagator {
+
+  /**
+   * Cells whose changed domain still has to be propagated, a growing ring buffer in FIFO order.
+   */
+  private int[] cellsToPropagate = new int[64];
+  private int queueHead = 0;
+  private int queueSize = 0;
+  private final long[] possiblePatterns;
+
+  DomainFilterPropagator(
+      Wave wave,
+      AdjacencyRules rules,
+      CellNeighbours neighbours,
+      IntConsumer domainListener,
+      AbortCheck abortCheck
+  ) {
+    super(wave, rules, neighbours, domainListener, abortCheck);
+    this.possiblePatterns = new long[wave.wordsPerCell()];
+  }
+
+  @Override
+  void reset(List<Integer> changedCells) {
+    queueSize = 0;
+    for (int cell : changedCells) {
+      enqueue(cell);
+    }
+  }
+
+  @Override
+  void commit() {
+  }
+
+  @Override
+  void rollback() {
+    queueSize = 0;
+  }
+
+  @Override
+  void collapse(int cell, int pattern) {
+    wave.collapse(cell, pattern);
+    domainListener.accept(cell);
+    enqueue(cell);
+  }
+
+  @Override
+  void restrict(int cell, long[] mask) {
+    wave.retain(cell, mask);
+    domainListener.accept(cell);
+    enqueue(cell);
+  }
+
+  @Override
+  long byteSize() {
+    return 8L * possiblePatterns.length + 4L * cellsToPropagate.length;
+  }
+
+  @Override
+  boolean propagate() {
+    while (queueSize > 0) {
+      if (abortCheck.poll()) {
+        queueSize = 0;
+        return false;
+      }
+      int currentCell = cellsToPropagate[queueHead];
+      queueHead = (queueHead + 1) % cellsToPropagate.length;
+      queueSize--;
+      propagatedCells++;
+
+      for (int i = 0; i < Direction3D.values().length; i++) {
+        int neighbourIndex = neighbour(currentCell, i);
+        if (neighbourIndex < 0 || isFloor(neighbourIndex)) {
+          continue;
+        }
+        int neighbourCount = wave.count(neighbourIndex);
+
+        Arrays.fill(possiblePatterns, 0L);
+        int possibleCount = 0;
+        int[] offsets = rules.getOffsets(i);
+        int[] indices = rules.getIndices(i);
+        for (int pattern = wave.firstPattern(currentCell);
+            pattern >= 0;
+            pattern = wave.nextPattern(currentCell, pattern + 1)) {
+          for (int k = offsets[pattern]; k < offsets[pattern + 1]; k++) {
+            int neighbourPattern = indices[k];
+            long mask = 1L << neighbourPattern;
+            if ((possiblePatterns[neighbourPattern >>> 6] & mask) == 0 && wave.get(neighbourIndex, neighbourPattern)) {
+              possiblePatterns[neighbourPattern >>> 6] |= mask;
+              possibleCount++;
+            }
+          }
+          if (possibleCount == neighbourCount) {
+            break;
+          }
+        }
+
+        if (possibleCount < neighbourCount) {
+          wave.retain(neighbourIndex, possiblePatterns);
+          domainListener.accept(neighbourIndex);
+          enqueue(neighbourIndex);
+        }
+
+        if (possibleCount == 0) {/* restart algorithm */
+          queueSize = 0;
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private void enqueue(int cell) {
+    if (queueSize == cellsToPropagate.length) {
+      //unroll the ring into a buffer twice the size
+      int[] grown = new int[queueSize * 2];
+      for (int i = 0; i < queueSize; i++) {
+        grown[i] = cellsToPropagate[(queueHead + i) % cellsToPropagate.length];
+      }
+      cellsToPropagate = grown;
+      queueHead = 0;
+    }
+    cellsToPropagate[(queueHead + queueSize) % cellsToPropagate.length] = cell;
+    queueSize++;
+  }
+}
@@ -0,0 +1,158 @@
+package org.example.model;
+
+import java.util.Arrays;
+
+/**
+ * Indexed binary min-heap of cell indices keyed on their entropy. Supports changing the key of a cell in O(log n), so
+ * the cell with the lowest entropy can be found without scanning the whole wave.
+ */
+class EntropyHeap {
+
+  private final int[] heap;
+  private final int[] position;
+  private final double[] keys;
+  private int size = 0;
+
+  EntropyHeap(int cellCount) {
+    this.heap = new int[cellCount];
+    this.position = new int[cellCount];
+    this.keys = new double[cellCount];
+    Arrays.fill(position, -1);
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  boolean contains(int cell) {
+    return position[cell] >= 0;
+  }
+
+  void clear() {
+    for (int i = 0; i < size; i++) {
+      position[heap[i]] = -1;
+    }
+    size = 0;
+  }
+
+  /**
+   * Rebuild the heap from the given entropy of every cell in O(n). Cells with entropy 0 are collapsed and left out.
+   */
+  void rebuild(double[] entropy) {
+    clear();
+    for (int cell = 0; cell < entropy.length; cell++) {
+      if (entropy[cell] > 0) {
+        keys[cell] = entropy[cell];
+        heap[size] = cell;
+        position[cell] = size;
+        size++;
+      }
+    }
+    for (int i = (size >>> 1) - 1; i >= 0; i--) {
+      siftDown(i);
+    }
+  }
+
+  /**
+   * Insert a cell or change its key if it is already contained.
+   */
+  void update(int cell, double key) {
+    int i = position[cell];
+    if (i < 0) {
+      keys[cell] = key;
+      heap[size] = cell;
+      position[cell] = size;
+      siftUp(size++);
+    } else if (key < keys[cell]) {
+      keys[cell] = key;
+      siftUp(i);
+    } else {
+      keys[cell] = key;
+      siftDown(i);
+    }
+  }
+
+  /**
+   * @return cell with the lowest key without removing it
+   */
+  int peek() {
+    return heap[0];
+  }
+
+  /**
+   * Remove and return the cell with the lowest key.
+   */
+  int poll() {
+    int cell = heap[0];
+    remove(cell);
+    return cell;
+  }
+
+  void remove(int cell) {
+    int i = position[cell];
+    if (i < 0) {
+      return;
+    }
+    position[cell] = -1;
+    size--;
+    if (i == size) {
+      return;
+    }
+    int last = heap[size];
+    heap[i] = last;
+    position[last] = i;
+    siftDown(i);
+    siftUp(position[last]);
+  }
+
+  private void siftUp(int i) {
+    int cell = heap[i];
+    double key = keys[cell];
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      int parentCell = heap[parent];
+      if (!less(cell, key, parentCell)) {
+        break;
+      }
+      heap[i] = parentCell;
+      position[parentCell] = i;
+      i = parent;
+    }
+    heap[i] = cell;
+    position[cell] = i;
+  }
+
+  private void siftDown(int i) {
+    int cell = heap[i];
+    int half = size >>> 1;
+    while (i < half) {
+      int child = 2 * i + 1;
+      int childCell = heap[child];
+      int right = child + 1;
+      if (right < size && less(heap[right], keys[heap[right]], childCell)) {
+        child = right;
+        childCell = heap[right];
+      }
+      if (!less(childCell, keys[childCell], cell)) {
+        break;
+      }
+      heap[i] = childCell;
+      position[childCell] = i;
+      i = child;
+    }
+    heap[i] = cell;
+    position[cell] = i;
+  }
+
+  /**
+   * Orders by key and breaks ties by the lower cell index.
+   */
+  private boolean less(int cell, double key, int otherCell) {
+    double otherKey = keys[otherCell];
+    return key < otherKey || (key == otherKey && cell < otherCell);
+  }
+}
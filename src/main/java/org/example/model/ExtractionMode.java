@@ -0,0 +1,17 @@
+package org.example.model;
+
+/**
+ * Available ways to extract patterns from the input model.
+ */
+public enum ExtractionMode {
+  /**
+   * Cut the input into non-overlapping NxNxN tiles. Every cell of the output holds a whole tile and tiles are adjacent
+   * if they were adjacent in the input.
+   */
+  TILED,
+  /**
+   * Take every NxNxN window of the input at stride 1. Every cell of the output is a single voxel and two windows are
+   * adjacent if they agree on their overlap when shifted by one voxel.
+   */
+  OVERLAPPING
+}
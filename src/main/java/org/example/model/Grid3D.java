@@ -1,35 +1,40 @@
 package org.example.model;
 
+import java.util.Arrays;
 import org.example.shared.Vector3;
 
 /**
  * This class is used to abstract Voxel models passed in as a 3D-array and offers some utility for its use in the VoxelWfcModel.
+ * <p>
+ * The voxels are stored once in a flat array (index = x + (y + z * sizeY) * sizeX). The padding is a view that
+ * transforms indices into that array, so it does not copy the model.
  */
 public class Grid3D {
 
-    private int[][][] grid;
+    /**
+     * Voxels of the unpadded model.
+     */
+    private final int[] data;
+    private final int dataX;
+    private final int dataY;
+    private final int dataZ;
+    /**
+     * Width of the padding of -1 voxels at both x sides, both z sides and the top.
+     */
+    private final int padding;
     private final Vector3<Integer> size;
 
     public Grid3D(int[][][] input) {
-        this.grid = input;
-        this.size = new Vector3<>(input[0][0].length, input[0].length, input.length);
+        this(input, 0);
     }
-    public Grid3D(int[][][] input, int padding) {
-        Vector3<Integer> inputSize = new Vector3<>(input[0][0].length, input[0].length, input.length);
-        this.size = new Vector3<>(inputSize.getX() + padding * 2, inputSize.getY() + padding, inputSize.getZ() + padding * 2);
-        this.grid = new int[size().getZ()][size().getY()][size().getX()];
 
-        for (int px = 0; px < size().getX(); px++) {
-            for (int py = 0; py < size().getY() ; py++) {
-                for (int pz = 0; pz < size().getZ(); pz++) {
-                    if(px < padding || px >= size().getX() - padding || py < padding || pz < padding || pz >= size().getZ() - padding) {
-                        this.grid[pz][py][px] = -1;
-                    } else {
-                        this.grid[pz][py][px] = input[pz - padding][py-padding][px-padding];
-                    }
-                }
-            }
-        }
+    public Grid3D(int[][][] input, int padding) {
+        this.data = flatten(input);
+        this.dataX = input[0][0].length;
+        this.dataY = input[0].length;
+        this.dataZ = input.length;
+        this.padding = padding;
+        this.size = new Vector3<>(dataX + padding * 2, dataY + padding, dataZ + padding * 2);
     }
 
     public Vector3<Integer> size() {
@@ -42,42 +47,94 @@ public class Grid3D {
 
     public int get(int x, int y, int z) {
         checkBounds(x, y, z);
-        return grid[z][y][x];
+        return read(x, y, z);
     }
 
+    /**
+     * @return the NxNxN pattern whose lowest corner is at the given position or null if it does not fit into the grid
+     */
     public Pattern3D getPatternAtPosition(Vector3<Integer> position, int patternSize) {
-        Pattern3D pattern = new Pattern3D(patternSize);
-        for (int px = 0; px < patternSize; px++) {
-            for (int py = 0; py < patternSize; py++) {
-                for(int pz = 0; pz < patternSize; pz++) {
-                    try {
-                        pattern.set(px, py, pz, get(position.getX() + px, position.getY() + py, position.getZ() + pz));
-                    } catch (IllegalArgumentException ex) {
-//                        pattern.set(px, py, pz, -1); //TODO better way to handle this?
-                        return null;
+        int x = position.getX();
+        int y = position.getY();
+        int z = position.getZ();
+        if (x < 0 || y < 0 || z < 0
+            || x + patternSize > size.getX() || y + patternSize > size.getY() || z + patternSize > size.getZ()) {
+            return null;
+        }
+
+        int[] values = new int[patternSize * patternSize * patternSize];
+        int sx = x - padding;
+        int sy = y - padding;
+        int sz = z - padding;
+        if (sx >= 0 && sy >= 0 && sz >= 0
+            && sx + patternSize <= dataX && sz + patternSize <= dataZ) {
+            //completely inside the unpadded model, copy whole rows
+            for (int pz = 0; pz < patternSize; pz++) {
+                for (int py = 0; py < patternSize; py++) {
+                    System.arraycopy(
+                        data, sx + (sy + py + (sz + pz) * dataY) * dataX,
+                        values, (py + pz * patternSize) * patternSize,
+                        patternSize
+                    );
+                }
+            }
+        } else {
+            int i = 0;
+            for (int pz = 0; pz < patternSize; pz++) {
+                for (int py = 0; py < patternSize; py++) {
+                    for (int px = 0; px < patternSize; px++) {
+                        values[i++] = read(x + px, y + py, z + pz);
                     }
                 }
             }
         }
-        return pattern;
+        return new Pattern3D(patternSize, values);
     }
 
     /**
-     * Clockwise 90 degree rotation around the y axis
+     * @return all voxels of the grid in a new flat array, index = x + (y + z * sizeY) * sizeX
      */
-    public Grid3D getYRotated() {
-        Integer sizeX = size().getZ();
-        Integer sizeY = size().getY();
-        Integer sizeZ = size().getX();
-        int[][][] rotated = new int[sizeZ][sizeY][sizeX];
-        for (int x = 0; x < sizeX; x++) {
+    int[] toArray() {
+        int sizeX = size.getX();
+        int sizeY = size.getY();
+        int sizeZ = size.getZ();
+        int[] voxels = new int[sizeX * sizeY * sizeZ];
+        Arrays.fill(voxels, -1);
+        for (int z = 0; z < dataZ; z++) {
+            for (int y = 0; y < dataY; y++) {
+                System.arraycopy(
+                    data, (y + z * dataY) * dataX,
+                    voxels, padding + (y + padding + (z + padding) * sizeY) * sizeX,
+                    dataX
+                );
+            }
+        }
+        return voxels;
+    }
+
+    /**
+     * Value at a position inside the grid, -1 inside the padding.
+     */
+    private int read(int x, int y, int z) {
+        int sx = x - padding;
+        int sy = y - padding;
+        int sz = z - padding;
+        if (sx < 0 || sx >= dataX || sy < 0 || sz < 0 || sz >= dataZ) {
+            return -1;
+        }
+        return data[sx + (sy + sz * dataY) * dataX];
+    }
+
+    private static int[] flatten(int[][][] input) {
+        int sizeX = input[0][0].length;
+        int sizeY = input[0].length;
+        int[] flat = new int[sizeX * sizeY * input.length];
+        for (int z = 0; z < input.length; z++) {
             for (int y = 0; y < sizeY; y++) {
-                for (int z = 0; z < sizeZ; z++) {
-                    rotated[z][y][x] = get(sizeZ-z-1,y,x);
-                }
+                System.arraycopy(input[z][y], 0, flat, (y + z * sizeY) * sizeX, sizeX);
             }
         }
-        return new Grid3D(rotated);
+        return flat;
     }
 
     private void checkBounds(int x, int y, int z) {
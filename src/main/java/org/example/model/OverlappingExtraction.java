@@ -0,0 +1,424 @@
+package org.example.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Pattern extraction of {@link ExtractionMode#OVERLAPPING}. Every NxNxN window of the input becomes a pattern
+ * occurrence. Windows are identified by a polynomial hash that is computed for all windows at once with one sliding
+ * pass along each axis, so finding the pattern of a window costs O(1) per voxel instead of O(N³). Equal hashes are
+ * confirmed by comparing the voxels.
+ * <p>
+ * Two patterns are adjacent in a direction if they agree on their overlap when the second one is shifted by one voxel
+ * in that direction. Rotated and mirrored variants are derived from the unique patterns with {@link PatternSymmetry},
+ * every window of a rotated input is the rotation of a window of the input.
+ */
+final class OverlappingExtraction {
+
+  private static final long BASE_X = 0x9E3779B97F4A7C15L;
+  private static final long BASE_Y = 0xC2B2AE3D27D4EB4FL;
+  private static final long BASE_Z = 0x165667B19E3779F9L;
+
+  private final int patternSize;
+  private final PatternSymmetry patternSymmetry;
+  private final long[] powersX;
+  private final long[] powersY;
+  private final long[] powersZ;
+
+  private final List<Pattern3D> patterns;
+  private final List<Double> patternFrequency;
+  private PatternPositions patternsByPosition;
+  private final HashMap<Long, Integer> patternsByHash = new HashMap<>();
+  /**
+   * Next pattern with the same window hash, -1 if there is none.
+   */
+  private int[] sameHash = new int[64];
+  private long[] occurrences = new long[64];
+  /**
+   * Patterns that occur at the bottom of the input and may be placed on the floor.
+   */
+  private final BitSet floorPatterns = new BitSet();
+
+  /**
+   * @param patterns receives the unique patterns, the empty pattern at index 0
+   * @param patternFrequency receives the relative frequency of every pattern
+   */
+  OverlappingExtraction(int patternSize, List<Pattern3D> patterns, List<Double> patternFrequency) {
+    this.patternSize = patternSize;
+    this.patternSymmetry = new PatternSymmetry(patternSize);
+    this.powersX = powers(BASE_X, patternSize);
+    this.powersY = powers(BASE_Y, patternSize);
+    this.powersZ = powers(BASE_Z, patternSize);
+    this.patterns = patterns;
+    this.patternFrequency = patternFrequency;
+  }
+
+  /**
+   * Extract the patterns of all windows of the given padded input and of its symmetric variants. Windows that lie
+   * completely in the padding are not counted.
+   *
+   * @param input padded input
+   * @param symmetry variants that are added
+   * @param avoidEmptyPattern how much should empty space be avoided
+   */
+  void extract(Grid3D input, Symmetry symmetry, double avoidEmptyPattern) {
+    int n = patternSize;
+    Pattern3D emptyPattern = new Pattern3D(n);
+    addPattern(emptyPattern, windowHash(emptyPattern.getData()));
+
+    long windowCount = 0;
+    int sizeX = input.size().getX();
+    int sizeY = input.size().getY();
+    int sizeZ = input.size().getZ();
+    int windowsX = sizeX - n + 1;
+    int windowsY = sizeY - n + 1;
+    int windowsZ = sizeZ - n + 1;
+    int tilesX = Math.max(0, (windowsX + n - 1) / n);
+    int tilesY = Math.max(0, (windowsY + n - 1) / n);
+    int tilesZ = Math.max(0, (windowsZ + n - 1) / n);
+    int[] positions = new int[tilesX * tilesY * tilesZ];
+    patternsByPosition = new PatternPositions(tilesX, tilesY, tilesZ, positions);
+    if (windowsX > 0 && windowsY > 0 && windowsZ > 0) {
+      int[] voxels = input.toArray();
+      long[] hashes = windowHashes(voxels, sizeX, sizeY, sizeZ);
+
+      for (int z = 0; z < windowsZ; z++) {
+        for (int y = 0; y < windowsY; y++) {
+          for (int x = 0; x < windowsX; x++) {
+            long hash = hashes[x + (y + z * windowsY) * windowsX];
+            int pattern = findPattern(voxels, sizeX, sizeY, x, y, z, hash);
+            if (pattern < 0) {
+              pattern = addPattern(new Pattern3D(n, copyWindow(voxels, sizeX, sizeY, x, y, z)), hash);
+            }
+            //the padding is N voxels wide at the sides and on top, these windows contain nothing but padding
+            boolean padding = x == 0 || x == windowsX - 1 || y == 0 || z == 0 || z == windowsZ - 1;
+            if (!padding) {
+              occurrences[pattern]++;
+              windowCount++;
+            }
+            if (y == windowsY - 1) {
+              floorPatterns.set(pattern);
+            }
+            if (x % n == 0 && y % n == 0 && z % n == 0) {
+              positions[x / n + (y / n + z / n * tilesY) * tilesX] = pattern;
+            }
+          }
+        }
+      }
+    }
+    windowCount *= symmetry.size();
+    addVariants(symmetry);
+
+    for (int i = 0; i < patterns.size(); i++) {
+      double frequency = occurrences[i];
+      if (i == 0) {
+        frequency = frequency > 0 ? frequency * (1 - avoidEmptyPattern) : 0.01;
+      }
+      patternFrequency.add(frequency / Math.max(1, windowCount));
+    }
+  }
+
+  /**
+   * @return pattern of the windows of the input on the grid of NxNxN tiles
+   */
+  PatternPositions getPatternsByPosition() {
+    return patternsByPosition;
+  }
+
+  /**
+   * Add the rotated and mirrored variants of all patterns found so far. A variant occurs as often as its pattern and
+   * may be placed on the floor if its pattern may.
+   */
+  private void addVariants(Symmetry symmetry) {
+    int baseCount = patterns.size();
+    long[] baseOccurrences = Arrays.copyOf(occurrences, baseCount);
+    BitSet baseFloorPatterns = (BitSet) floorPatterns.clone();
+    for (int mirror = 0; mirror < (symmetry.isReflection() ? 2 : 1); mirror++) {
+      for (int r = mirror == 0 ? 1 : 0; r < symmetry.getRotations(); r++) {
+        for (int p = 0; p < baseCount; p++) {
+          int[] variant = patternSymmetry.transform(patterns.get(p), r, mirror == 1).getData();
+          long hash = windowHash(variant);
+          int pattern = findPattern(variant, patternSize, patternSize, 0, 0, 0, hash);
+          if (pattern < 0) {
+            pattern = addPattern(new Pattern3D(patternSize, variant), hash);
+          }
+          occurrences[pattern] += baseOccurrences[p];
+          if (baseFloorPatterns.get(p)) {
+            floorPatterns.set(pattern);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Find the adjacency constraints of the extracted patterns by comparing their overlaps.
+   */
+  AdjacencyRules findNeighbours() {
+    int n = patternSize;
+    int patternCount = patterns.size();
+    int floorIndex = patternCount;
+    NeighbourLists[] neighbours = new NeighbourLists[Direction3D.values().length];
+    for (int d = 0; d < neighbours.length; d++) {
+      neighbours[d] = new NeighbourLists(patternCount + 1);
+    }
+
+    //positive and negative direction along x, y and z
+    Direction3D[][] axes = {
+        {Direction3D.RIGHT, Direction3D.LEFT},
+        {Direction3D.DOWN, Direction3D.UP},
+        {Direction3D.FORWARD, Direction3D.BACKWARD}
+    };
+    int[] strides = {1, n, n * n};
+    for (int axis = 0; axis < axes.length; axis++) {
+      NeighbourLists positive = neighbours[axes[axis][0].ordinal()];
+      NeighbourLists negative = neighbours[axes[axis][1].ordinal()];
+      int stride = strides[axis];
+
+      //patterns grouped by the hash of the part the previous pattern along the axis overlaps
+      HashMap<Long, List<Integer>> byLowerPart = new HashMap<>();
+      for (int q = 0; q < patternCount; q++) {
+        long hash = overlapHash(patterns.get(q).getData(), stride, 0);
+        byLowerPart.computeIfAbsent(hash, key -> new ArrayList<>()).add(q);
+      }
+      for (int p = 0; p < patternCount; p++) {
+        int[] upper = patterns.get(p).getData();
+        List<Integer> candidates = byLowerPart.get(overlapHash(upper, stride, 1));
+        if (candidates == null) {
+          continue;
+        }
+        for (int q : candidates) {
+          if (overlapEquals(upper, patterns.get(q).getData(), stride)) {
+            positive.add(p, q);
+            negative.add(q, p);
+          }
+        }
+      }
+    }
+
+    NeighbourLists down = neighbours[Direction3D.DOWN.ordinal()];
+    NeighbourLists up = neighbours[Direction3D.UP.ordinal()];
+    for (int p = floorPatterns.nextSetBit(0); p >= 0; p = floorPatterns.nextSetBit(p + 1)) {
+      down.add(p, floorIndex);
+      up.add(floorIndex, p);
+    }
+
+    int[][] offsets = new int[neighbours.length][];
+    int[][] indices = new int[neighbours.length][];
+    for (int d = 0; d < neighbours.length; d++) {
+      offsets[d] = neighbours[d].offsets();
+      indices[d] = neighbours[d].indices();
+    }
+    return new AdjacencyRules(offsets, indices);
+  }
+
+  private int addPattern(Pattern3D pattern, long hash) {
+    int index = patterns.size();
+    patterns.add(pattern);
+    if (index == sameHash.length) {
+      sameHash = Arrays.copyOf(sameHash, index * 2);
+      occurrences = Arrays.copyOf(occurrences, index * 2);
+    }
+    Integer previous = patternsByHash.put(hash, index);
+    sameHash[index] = previous != null ? previous : -1;
+    return index;
+  }
+
+  /**
+   * @return index of the pattern of the window at the given position or -1 if it is a new pattern
+   */
+  private int findPattern(int[] voxels, int sizeX, int sizeY, int x, int y, int z, long hash) {
+    Integer first = patternsByHash.get(hash);
+    for (int p = first != null ? first : -1; p >= 0; p = sameHash[p]) {
+      if (windowEquals(patterns.get(p).getData(), voxels, sizeX, sizeY, x, y, z)) {
+        return p;
+      }
+    }
+    return -1;
+  }
+
+  private boolean windowEquals(int[] pattern, int[] voxels, int sizeX, int sizeY, int x, int y, int z) {
+    int n = patternSize;
+    int i = 0;
+    for (int pz = 0; pz < n; pz++) {
+      for (int py = 0; py < n; py++) {
+        int offset = x + (y + py + (z + pz) * sizeY) * sizeX;
+        for (int px = 0; px < n; px++) {
+          if (pattern[i++] != voxels[offset + px]) {
+            return false;
+          }
+        }
+      }
+    }
+    return true;
+  }
+
+  private int[] copyWindow(int[] voxels, int sizeX, int sizeY, int x, int y, int z) {
+    int n = patternSize;
+    int[] window = new int[n * n * n];
+    for (int pz = 0; pz < n; pz++) {
+      for (int py = 0; py < n; py++) {
+        System.arraycopy(voxels, x + (y + py + (z + pz) * sizeY) * sizeX, window, (py + pz * n) * n, n);
+      }
+    }
+    return window;
+  }
+
+  /**
+   * Hash of every window, indexed by its position x + (y + z * windowsY) * windowsX. The hash of a window is the sum of
+   * its mixed voxel values v(i, j, k) * BASE_X^(N-1-i) * BASE_Y^(N-1-j) * BASE_Z^(N-1-k), see
+   * {@link #windowHash(int[])}.
+   */
+  private long[] windowHashes(int[] voxels, int sizeX, int sizeY, int sizeZ) {
+    int n = patternSize;
+    int windowsX = sizeX - n + 1;
+    int windowsY = sizeY - n + 1;
+    int windowsZ = sizeZ - n + 1;
+    long[] mixed = new long[voxels.length];
+    for (int i = 0; i < voxels.length; i++) {
+      mixed[i] = RuleSetCache.mix(voxels[i]);
+    }
+
+    long[] alongX = new long[windowsX * sizeY * sizeZ];
+    for (int z = 0; z < sizeZ; z++) {
+      for (int y = 0; y < sizeY; y++) {
+        slide(mixed, (y + z * sizeY) * sizeX, 1, sizeX, alongX, (y + z * sizeY) * windowsX, 1, BASE_X, powersX[n - 1]);
+      }
+    }
+    long[] alongXY = new long[windowsX * windowsY * sizeZ];
+    for (int z = 0; z < sizeZ; z++) {
+      for (int x = 0; x < windowsX; x++) {
+        slide(
+            alongX, x + z * sizeY * windowsX, windowsX, sizeY,
+            alongXY, x + z * windowsY * windowsX, windowsX,
+            BASE_Y, powersY[n - 1]
+        );
+      }
+    }
+    long[] windows = new long[windowsX * windowsY * windowsZ];
+    int layer = windowsX * windowsY;
+    for (int y = 0; y < windowsY; y++) {
+      for (int x = 0; x < windowsX; x++) {
+        slide(alongXY, x + y * windowsX, layer, sizeZ, windows, x + y * windowsX, layer, BASE_Z, powersZ[n - 1]);
+      }
+    }
+    return windows;
+  }
+
+  /**
+   * Polynomial hash of every run of N consecutive values of a line, updated in O(1) per step.
+   *
+   * @param topPower base^(N-1), the weight of the value that leaves the run
+   */
+  private void slide(
+      long[] source, int sourceOffset, int sourceStride, int length,
+      long[] target, int targetOffset, int targetStride,
+      long base, long topPower
+  ) {
+    int n = patternSize;
+    long hash = 0;
+    for (int t = 0; t < n; t++) {
+      hash = hash * base + source[sourceOffset + t * sourceStride];
+    }
+    target[targetOffset] = hash;
+    for (int t = n; t < length; t++) {
+      hash = (hash - source[sourceOffset + (t - n) * sourceStride] * topPower) * base
+          + source[sourceOffset + t * sourceStride];
+      target[targetOffset + (t - n + 1) * targetStride] = hash;
+    }
+  }
+
+  /**
+   * Same hash as {@link #windowHashes} for the flat values of a single pattern.
+   */
+  private long windowHash(int[] values) {
+    int n = patternSize;
+    long hash = 0;
+    for (int z = 0; z < n; z++) {
+      for (int y = 0; y < n; y++) {
+        for (int x = 0; x < n; x++) {
+          long weight = powersX[n - 1 - x] * powersY[n - 1 - y] * powersZ[n - 1 - z];
+          hash += RuleSetCache.mix(values[x + (y + z * n) * n]) * weight;
+        }
+      }
+    }
+    return hash;
+  }
+
+  /**
+   * Hash of the N-1 layers of a pattern along the axis of the given stride, starting at layer from.
+   */
+  private long overlapHash(int[] values, int stride, int from) {
+    long hash = 0;
+    for (int i = 0; i < values.length; i++) {
+      int layer = (i / stride) % patternSize;
+      if (layer >= from && layer < from + patternSize - 1) {
+        hash = hash * BASE_X + RuleSetCache.mix(values[i]);
+      }
+    }
+    return hash;
+  }
+
+  /**
+   * @return true if the layers 1..N-1 of the upper pattern equal the layers 0..N-2 of the lower pattern
+   */
+  private boolean overlapEquals(int[] upper, int[] lower, int stride) {
+    for (int i = 0; i < lower.length; i++) {
+      if ((i / stride) % patternSize < patternSize - 1 && upper[i + stride] != lower[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static long[] powers(long base, int count) {
+    long[] powers = new long[count];
+    powers[0] = 1;
+    for (int i = 1; i < count; i++) {
+      powers[i] = powers[i - 1] * base;
+    }
+    return powers;
+  }
+
+  /**
+   * Growing neighbour list of every pattern in one direction.
+   */
+  private static final class NeighbourLists {
+
+    private final int[][] lists;
+    private final int[] sizes;
+
+    NeighbourLists(int patternCount) {
+      this.lists = new int[patternCount][4];
+      this.sizes = new int[patternCount];
+    }
+
+    void add(int pattern, int neighbour) {
+      if (sizes[pattern] == lists[pattern].length) {
+        lists[pattern] = Arrays.copyOf(lists[pattern], sizes[pattern] * 2);
+      }
+      lists[pattern][sizes[pattern]++] = neighbour;
+    }
+
+    int[] offsets() {
+      int[] offsets = new int[lists.length + 1];
+      for (int p = 0; p < lists.length; p++) {
+        offsets[p + 1] = offsets[p] + sizes[p];
+      }
+      return offsets;
+    }
+
+    int[] indices() {
+      int[] offsets = offsets();
+      int[] indices = new int[offsets[lists.length]];
+      for (int p = 0; p < lists.length; p++) {
+        System.arraycopy(lists[p], 0, indices, offsets[p], sizes[p]);
+        Arrays.sort(indices, offsets[p], offsets[p + 1]);
+      }
+      return indices;
+    }
+  }
+}
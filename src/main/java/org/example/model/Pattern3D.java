@@ -1,63 +1,77 @@
 package org.example.model;
 
 import java.util.Arrays;
-import java.util.Objects;
 
 /**
  * Abstraction of a 3D voxel pattern in the Voxel-WFC.
  */
 public class Pattern3D {
     private int size;
-    private int[][][] values;
+    /**
+     * Voxel values stored flat in x, y, z order: index = x + y * size + z * size * size.
+     */
+    private int[] values;
 
     public Pattern3D(int size) {
         this.size = size;
-        this.values = new int[size][size][size];
-        for (int x = 0; x < size; x++) {
-            for (int y = 0; y < size; y++) {
-                for (int z = 0; z < size; z++) {
-                    this.values[z][y][x] = -1;
-                }
-            }
-        }
+        this.values = new int[size * size * size];
+        Arrays.fill(this.values, -1);
     }
 
-    public void set(int x, int y, int z, int value) {
-        values[z][y][x] = value;
+    /**
+     * Wrap flat voxel values, see {@link #values} for the layout. The array is not copied.
+     */
+    Pattern3D(int size, int[] values) {
+        this.size = size;
+        this.values = values;
+    }
+
+    void set(int x, int y, int z, int value) {
+        values[index(x, y, z)] = value;
     }
 
     public int get(int x, int y, int z) {
-        return values[z][y][x];
+        return values[index(x, y, z)];
     }
 
     public int getSize() {
         return size;
     }
 
-    public int[][][] getRawArray() {
+    /**
+     * @return the flat voxel values, see {@link #values} for the layout. This is the internal array, patterns of a
+     * {@link CompiledRuleSet} are shared and must not be modified.
+     */
+    int[] getData() {
         return values;
     }
 
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        Pattern3D pattern = (Pattern3D) o;
-        if (size != pattern.size) return false;
+    public int[][][] getRawArray() {
+        int[][][] raw = new int[size][size][size];
         for (int x = 0; x < size; x++) {
             for (int y = 0; y < size; y++) {
                 for (int z = 0; z < size; z++) {
-                    if(pattern.get(x,y,z) != values[z][y][x]) return false;
+                    raw[z][y][x] = get(x, y, z);
                 }
             }
         }
-        return true;
+        return raw;
+    }
+
+    private int index(int x, int y, int z) {
+        return x + (y + z * size) * size;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Pattern3D pattern = (Pattern3D) o;
+        return size == pattern.size && Arrays.equals(values, pattern.values);
     }
 
     @Override
     public int hashCode() {
-        int result = Objects.hash(size);
-        result = 31 * result + Arrays.hashCode(values);
-        return result;
+        return 31 * size + Arrays.hashCode(values);
     }
 }
@@ -0,0 +1,42 @@
+package org.example.model;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of the compilation of a {@link CompiledRuleSet}. Disabled by default, enable it with
+ * {@code -XX:StartFlightRecording:settings=<file>} or in JDK Mission Control.
+ */
+@Name("org.example.PatternExtraction")
+@Label("Pattern Extraction")
+@Category({"WFC", "Extraction"})
+@Enabled(false)
+class PatternExtractionEvent extends Event {
+
+  @Label("Input Hash")
+  long inputHash;
+
+  @Label("Input Size X")
+  int sizeX;
+
+  @Label("Input Size Y")
+  int sizeY;
+
+  @Label("Input Size Z")
+  int sizeZ;
+
+  @Label("Pattern Size")
+  int patternSize;
+
+  @Label("Extraction Mode")
+  String extractionMode;
+
+  @Label("Symmetry")
+  String symmetry;
+
+  @Label("Pattern Count")
+  int patternCount;
+}
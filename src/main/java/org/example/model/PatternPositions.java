@@ -0,0 +1,86 @@
+package org.example.model;
+
+/**
+ * Pattern index at every tile position of the input. The positions are packed into the index
+ * x + (y + z * sizeY) * sizeX of a flat array, so looking up a position neither allocates nor hashes.
+ */
+public final class PatternPositions {
+
+  /**
+   * Stored at positions without a pattern.
+   */
+  public static final int NONE = -1;
+
+  private final int sizeX;
+  private final int sizeY;
+  private final int sizeZ;
+  private final int[] patterns;
+
+  /**
+   * Receives a position and the pattern at that position.
+   */
+  @FunctionalInterface
+  public interface Consumer {
+
+    void accept(int x, int y, int z, int pattern);
+  }
+
+  /**
+   * Wrap the given pattern indices, see {@link PatternPositions} for the layout. The array is not copied.
+   */
+  PatternPositions(int sizeX, int sizeY, int sizeZ, int[] patterns) {
+    if (patterns.length != sizeX * sizeY * sizeZ) {
+      throw new IllegalArgumentException("Expected " + sizeX * sizeY * sizeZ + " positions, got " + patterns.length);
+    }
+    this.sizeX = sizeX;
+    this.sizeY = sizeY;
+    this.sizeZ = sizeZ;
+    this.patterns = patterns;
+  }
+
+  public int getSizeX() {
+    return sizeX;
+  }
+
+  public int getSizeY() {
+    return sizeY;
+  }
+
+  public int getSizeZ() {
+    return sizeZ;
+  }
+
+  /**
+   * @return pattern index at the given position or {@link #NONE}
+   */
+  public int get(int x, int y, int z) {
+    if (x < 0 || x >= sizeX || y < 0 || y >= sizeY || z < 0 || z >= sizeZ) {
+      return NONE;
+    }
+    return patterns[x + (y + z * sizeY) * sizeX];
+  }
+
+  /**
+   * Call the consumer for every position that holds a pattern.
+   */
+  public void forEach(Consumer consumer) {
+    int i = 0;
+    for (int z = 0; z < sizeZ; z++) {
+      for (int y = 0; y < sizeY; y++) {
+        for (int x = 0; x < sizeX; x++) {
+          int pattern = patterns[i++];
+          if (pattern != NONE) {
+            consumer.accept(x, y, z, pattern);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the flat pattern indices, see {@link PatternPositions} for the layout. Must not be modified.
+   */
+  int[] getData() {
+    return patterns;
+  }
+}
@@ -0,0 +1,76 @@
+package org.example.model;
+
+/**
+ * Rotates and mirrors patterns with precomputed permutations of their flat voxel indices, so the variants of a pattern
+ * are derived from the pattern alone instead of from a rotated copy of the whole input. A variant is identified by its
+ * number of clockwise rotations around the y axis followed by an optional mirroring along the x axis, the same order
+ * {@link #transform(Direction3D, int, boolean)} remaps directions in.
+ */
+final class PatternSymmetry {
+
+  private final int patternSize;
+  /**
+   * Rotated values[i] = values[yRotation[i]], a clockwise rotation around the y axis.
+   */
+  private final int[] yRotation;
+  /**
+   * Mirrored values[i] = values[xMirror[i]].
+   */
+  private final int[] xMirror;
+
+  PatternSymmetry(int patternSize) {
+    int n = patternSize;
+    this.patternSize = n;
+    this.yRotation = new int[n * n * n];
+    this.xMirror = new int[n * n * n];
+    for (int z = 0; z < n; z++) {
+      for (int y = 0; y < n; y++) {
+        for (int x = 0; x < n; x++) {
+          int index = x + (y + z * n) * n;
+          yRotation[index] = (n - z - 1) + (y + x * n) * n;
+          xMirror[index] = (n - x - 1) + (y + z * n) * n;
+        }
+      }
+    }
+  }
+
+  /**
+   * Clockwise 90 degree rotation around the y axis
+   */
+  Pattern3D rotate(Pattern3D pattern) {
+    return permute(pattern, yRotation);
+  }
+
+  /**
+   * Mirror image along the x axis
+   */
+  Pattern3D mirror(Pattern3D pattern) {
+    return permute(pattern, xMirror);
+  }
+
+  Pattern3D transform(Pattern3D pattern, int rotations, boolean mirrored) {
+    for (int r = 0; r < rotations; r++) {
+      pattern = rotate(pattern);
+    }
+    return mirrored ? mirror(pattern) : pattern;
+  }
+
+  /**
+   * @return direction in the transformed input that corresponds to the given direction of the input
+   */
+  static Direction3D transform(Direction3D direction, int rotations, boolean mirrored) {
+    for (int r = 0; r < rotations; r++) {
+      direction = Utils.rotateYDir(direction);
+    }
+    return mirrored ? Utils.mirrorXDir(direction) : direction;
+  }
+
+  private Pattern3D permute(Pattern3D pattern, int[] permutation) {
+    int[] values = pattern.getData();
+    int[] permuted = new int[values.length];
+    for (int i = 0; i < permuted.length; i++) {
+      permuted[i] = values[permutation[i]];
+    }
+    return new Pattern3D(patternSize, permuted);
+  }
+}
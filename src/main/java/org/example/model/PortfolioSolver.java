@@ -0,0 +1,119 @@
+package org.example.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import org.example.shared.CancellationToken;
+
+/**
+ * Runs several independent solves of the same model in parallel, each with its own seed derived from the seed of the
+ * model. The first successful attempt wins and all others are cancelled. Solving a fresh {@link VoxelWfcModel} with the
+ * winning seed reproduces the result.
+ */
+public class PortfolioSolver {
+
+  private final VoxelWfcModel model;
+  private final int attempts;
+  private final ForkJoinPool pool;
+
+  /**
+   * @param model model that provides the patterns, parameters and the base seed
+   * @param attempts number of independent attempts
+   * @param pool pool to run the attempts on
+   */
+  public PortfolioSolver(VoxelWfcModel model, int attempts, ForkJoinPool pool) {
+    if (attempts < 1) {
+      throw new IllegalArgumentException("At least one attempt is required.");
+    }
+    this.model = model;
+    this.attempts = attempts;
+    this.pool = pool;
+  }
+
+  public PortfolioSolver(VoxelWfcModel model, int attempts) {
+    this(model, attempts, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Seed of the given attempt. Attempt 0 uses the base seed itself, so a portfolio of one equals a serial solve.
+   */
+  public static long deriveSeed(long baseSeed, int attempt) {
+    if (attempt == 0) {
+      return baseSeed;
+    }
+    // SplitMix64 finalizer
+    long z = baseSeed + attempt * 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  /**
+   * Run all attempts until the first one succeeds.
+   *
+   * @return result of the winning attempt or null if no attempt found a solution
+   */
+  public Result solve() {
+    //one token for all attempts, a token cannot be missed by an attempt that did not start solving yet
+    CancellationToken token = new CancellationToken();
+    List<Future<Result>> futures = new ArrayList<>();
+    CompletionService<Result> completionService = new ExecutorCompletionService<>(pool);
+    for (int i = 0; i < attempts; i++) {
+      int attempt = i;
+      VoxelWfcModel attemptModel = new VoxelWfcModel(model, deriveSeed(model.getSeed(), attempt));
+      futures.add(completionService.submit(
+          () -> new Result(attemptModel.solve(token, null).getOutput(), attemptModel.getSeed(), attempt)
+      ));
+    }
+
+    try {
+      for (int i = 0; i < attempts; i++) {
+        Result result = completionService.take().get();
+        if (result.getOutput() != null) {
+          return result;
+        }
+      }
+      return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Portfolio attempt failed", e.getCause());
+    } finally {
+      token.cancel();
+      futures.forEach(future -> future.cancel(false));
+    }
+  }
+
+  /**
+   * Output of the winning attempt together with the seed that reproduces it.
+   */
+  public static class Result {
+
+    private final int[][][] output;
+    private final long seed;
+    private final int attempt;
+
+    Result(int[][][] output, long seed, int attempt) {
+      this.output = output;
+      this.seed = seed;
+      this.attempt = attempt;
+    }
+
+    public int[][][] getOutput() {
+      return output;
+    }
+
+    public long getSeed() {
+      return seed;
+    }
+
+    public int getAttempt() {
+      return attempt;
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package org.example.model;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of a single propagation burst, from a decision until the wave is consistent or contradictory. Disabled by
+ * default.
+ */
+@Name("org.example.Propagation")
+@Label("Propagation")
+@Category({"WFC", "Solver"})
+@Enabled(false)
+class PropagationEvent extends Event {
+
+  @Label("Seed")
+  long seed;
+
+  @Label("Propagated Cells")
+  long propagatedCells;
+
+  @Label("Banned Patterns")
+  long bans;
+
+  @Label("Collapsed Cells")
+  int collapsedCells;
+
+  @Label("Cell Count")
+  int cellCount;
+
+  @Label("Success")
+  boolean success;
+}
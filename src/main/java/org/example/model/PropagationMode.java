@@ -0,0 +1,15 @@
+package org.example.model;
+
+/**
+ * Available strategies to propagate changes of the wave.
+ */
+public enum PropagationMode {
+  /**
+   * Recompute the domain of every neighbour of a changed cell from the patterns left in that cell.
+   */
+  DOMAIN_FILTER,
+  /**
+   * AC-4: keep a support counter per cell, direction and pattern and ban a pattern once its support drops to zero.
+   */
+  SUPPORT_COUNT
+}
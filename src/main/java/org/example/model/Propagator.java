@@ -0,0 +1,115 @@
+package org.example.model;
+
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Strategy used by the {@link VoxelWfcModel} to make the wave consistent with the adjacency constraints.
+ */
+abstract class Propagator {
+
+  protected final Wave wave;
+  protected final AdjacencyRules rules;
+  protected final CellNeighbours neighbours;
+  protected final IntConsumer domainListener;
+  protected final AbortCheck abortCheck;
+  protected long propagatedCells = 0;
+
+  /**
+   * @param wave wave to operate on
+   * @param rules compiled adjacency constraints
+   * @param neighbours neighbour lookup of the wave
+   * @param domainListener called with the cell index whenever the domain of a cell was reduced
+   * @param abortCheck polled while propagating, propagation stops early if the solve has to stop
+   */
+  Propagator(
+      Wave wave,
+      AdjacencyRules rules,
+      CellNeighbours neighbours,
+      IntConsumer domainListener,
+      AbortCheck abortCheck
+  ) {
+    this.wave = wave;
+    this.rules = rules;
+    this.neighbours = neighbours;
+    this.domainListener = domainListener;
+    this.abortCheck = abortCheck;
+  }
+
+  static Propagator create(
+      PropagationMode mode,
+      Wave wave,
+      AdjacencyRules rules,
+      CellNeighbours neighbours,
+      IntConsumer domainListener,
+      AbortCheck abortCheck
+  ) {
+    switch (mode) {
+      case SUPPORT_COUNT:
+        return new SupportCountPropagator(wave, rules, neighbours, domainListener, abortCheck);
+      case DOMAIN_FILTER:
+      default:
+        return new DomainFilterPropagator(wave, rules, neighbours, domainListener, abortCheck);
+    }
+  }
+
+  /**
+   * Synchronize with the current state of the wave after it was initialized.
+   *
+   * @param changedCells cells whose domain was set without the propagator
+   */
+  abstract void reset(List<Integer> changedCells);
+
+  /**
+   * Mark a new decision point in sync with {@link Wave#clearTrail()}.
+   */
+  abstract void commit();
+
+  /**
+   * Undo all internal bookkeeping since the last decision point. Called together with {@link Wave#rollback}.
+   */
+  abstract void rollback();
+
+  /**
+   * Reduce the domain of a cell to a single pattern and schedule the change for propagation.
+   */
+  abstract void collapse(int cell, int pattern);
+
+  /**
+   * Intersect the domain of a cell with the given bitset and schedule the change for propagation.
+   */
+  abstract void restrict(int cell, long[] mask);
+
+  /**
+   * Propagate all scheduled changes until the wave is consistent or a contradiction happens.
+   *
+   * @return true -> success, false -> contradiction or the solve has to stop
+   */
+  abstract boolean propagate();
+
+  /**
+   * Total number of cells whose changed domain was propagated to their neighbours.
+   */
+  long propagatedCells() {
+    return propagatedCells;
+  }
+
+  /**
+   * Memory held by the arrays of the propagator.
+   */
+  abstract long byteSize();
+
+  /**
+   * @return index of the neighbour of a cell in the given direction or -1 if it is outside of the wave
+   */
+  protected int neighbour(int cell, int direction) {
+    return neighbours.neighbour(cell, direction);
+  }
+
+  /**
+   * Floor cells are fixed and never changed by propagation.
+   */
+  protected boolean isFloor(int cell) {
+    return wave.count(cell) == 1 && wave.get(cell, rules.getFloorIndex());
+  }
+}
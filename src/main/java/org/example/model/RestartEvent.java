@@ -0,0 +1,29 @@
+package org.example.model;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of a restart of a solve after too many failed propagations. Disabled by default.
+ */
+@Name("org.example.Restart")
+@Label("Restart")
+@Category({"WFC", "Solver"})
+@Enabled(false)
+class RestartEvent extends Event {
+
+  @Label("Seed")
+  long seed;
+
+  @Label("Tries")
+  int tries;
+
+  @Label("Collapsed Cells")
+  int collapsedCells;
+
+  @Label("Cell Count")
+  int cellCount;
+}
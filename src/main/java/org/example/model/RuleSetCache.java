@@ -0,0 +1,139 @@
+package org.example.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Least recently used cache of {@link CompiledRuleSet}s keyed by a hash of the input model and the extraction
+ * parameters, so generating several outputs from the same input only extracts its patterns once.
+ */
+public final class RuleSetCache {
+
+  private static final RuleSetCache SHARED = new RuleSetCache(16);
+
+  private final Map<Key, CompiledRuleSet> ruleSets;
+
+  /**
+   * @param capacity maximum number of rule sets kept
+   */
+  public RuleSetCache(int capacity) {
+    this.ruleSets = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, CompiledRuleSet> eldest) {
+        return size() > capacity;
+      }
+    };
+  }
+
+  /**
+   * Cache shared by all models created from an input array.
+   */
+  public static RuleSetCache shared() {
+    return SHARED;
+  }
+
+  /**
+   * Return the cached tiled rule set for the given input and parameters or compile and cache it.
+   */
+  public CompiledRuleSet get(int[][][] input, int patternSize, boolean rotation, double avoidEmptyPattern) {
+    return get(input, patternSize, ExtractionMode.TILED, Symmetry.of(rotation, false), avoidEmptyPattern);
+  }
+
+  /**
+   * Return the cached rule set for the given input and parameters or compile and cache it.
+   */
+  public CompiledRuleSet get(
+      int[][][] input,
+      int patternSize,
+      ExtractionMode extractionMode,
+      Symmetry symmetry,
+      double avoidEmptyPattern
+  ) {
+    long start = System.nanoTime();
+    long inputHash = contentHash(input);
+    Key key = new Key(inputHash, patternSize, extractionMode, symmetry, avoidEmptyPattern);
+    synchronized (ruleSets) {
+      CompiledRuleSet ruleSet = ruleSets.get(key);
+      if (ruleSet != null) {
+        return ruleSet;
+      }
+    }
+    //compile without holding the lock, a concurrent compilation of the same key only wastes work
+    CompiledRuleSet ruleSet =
+        CompiledRuleSet.compile(input, inputHash, patternSize, extractionMode, symmetry, avoidEmptyPattern, start);
+    synchronized (ruleSets) {
+      CompiledRuleSet existing = ruleSets.putIfAbsent(key, ruleSet);
+      return existing != null ? existing : ruleSet;
+    }
+  }
+
+  public void clear() {
+    synchronized (ruleSets) {
+      ruleSets.clear();
+    }
+  }
+
+  /**
+   * 64 bit hash of the dimensions and all voxels of an input model.
+   */
+  static long contentHash(int[][][] input) {
+    long hash = mix(input.length);
+    hash = mix(hash ^ input[0].length);
+    hash = mix(hash ^ input[0][0].length);
+    for (int[][] slice : input) {
+      for (int[] row : slice) {
+        for (int value : row) {
+          hash = mix(hash ^ value);
+        }
+      }
+    }
+    return hash;
+  }
+
+  static long mix(long z) {
+    // SplitMix64 finalizer
+    z = (z + 0x9E3779B97F4A7C15L);
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  private static final class Key {
+
+    private final long inputHash;
+    private final int patternSize;
+    private final ExtractionMode extractionMode;
+    private final Symmetry symmetry;
+    private final double avoidEmptyPattern;
+
+    Key(long inputHash, int patternSize, ExtractionMode extractionMode, Symmetry symmetry, double avoidEmptyPattern) {
+      this.inputHash = inputHash;
+      this.patternSize = patternSize;
+      this.extractionMode = extractionMode;
+      this.symmetry = symmetry;
+      this.avoidEmptyPattern = avoidEmptyPattern;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) o;
+      return inputHash == key.inputHash
+          && patternSize == key.patternSize
+          && extractionMode == key.extractionMode
+          && symmetry == key.symmetry
+          && Double.compare(avoidEmptyPattern, key.avoidEmptyPattern) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(inputHash, patternSize, extractionMode, symmetry, avoidEmptyPattern);
+    }
+  }
+}
@@ -0,0 +1,290 @@
+package org.example.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.example.shared.Vector3;
+
+/**
+ * Binary file format of a {@link CompiledRuleSet}, stored as {@code <model>.rules} next to the {@code .vox} file it was
+ * compiled from. The file is read into a heap buffer with one read and every section is copied with a single bulk
+ * transfer, so loading a rule set costs little more than reading the file. The file is not mapped, so it is closed
+ * after loading and can be replaced on every platform.
+ * <p>
+ * Layout (little endian): a header of magic, version, pattern size, extraction mode, symmetry, avoidEmptyPattern,
+ * input hash, input size, pattern count and dense pattern count, followed by the voxel values of all patterns, their
+ * frequencies, the weights of all dense patterns, the CSR offsets and indices of every direction and the size and
+ * pattern indices of the {@link PatternPositions} of the input.
+ */
+public final class RuleSetFile {
+
+  public static final String EXTENSION = ".rules";
+
+  private static final int MAGIC = 0x56574643; // "VWFC"
+  private static final int VERSION = 1;
+  private static final int DIRECTIONS = Direction3D.values().length;
+
+  private RuleSetFile() {
+  }
+
+  /**
+   * @return path of the rule set file that belongs to the given .vox file
+   */
+  public static Path pathFor(Path voxFile) {
+    String name = voxFile.getFileName().toString();
+    int extension = name.lastIndexOf('.');
+    return voxFile.resolveSibling((extension >= 0 ? name.substring(0, extension) : name) + EXTENSION);
+  }
+
+  /**
+   * Load or compile the tiled rule set of the given .vox file, see
+   * {@link #loadOrCompile(Path, int, ExtractionMode, Symmetry, double, int[][][])}.
+   */
+  public static CompiledRuleSet loadOrCompile(
+      Path voxFile,
+      int patternSize,
+      boolean rotation,
+      double avoidEmptyPattern,
+      int[][][] input
+  ) {
+    return loadOrCompile(
+        voxFile,
+        patternSize,
+        ExtractionMode.TILED,
+        Symmetry.of(rotation, false),
+        avoidEmptyPattern,
+        input
+    );
+  }
+
+  /**
+   * Load the rule set file of the given .vox file if it was compiled from the same voxels with the given parameters.
+   * Otherwise compile the input and write the file for the next start.
+   *
+   * @param voxFile path of the input model
+   * @param input voxels of the input model, their {@link RuleSetCache#contentHash(int[][][])} has to match the file
+   */
+  public static CompiledRuleSet loadOrCompile(
+      Path voxFile,
+      int patternSize,
+      ExtractionMode extractionMode,
+      Symmetry symmetry,
+      double avoidEmptyPattern,
+      int[][][] input
+  ) {
+    long start = System.nanoTime();
+    long inputHash = RuleSetCache.contentHash(input);
+    Path rulesFile = pathFor(voxFile);
+    try {
+      if (Files.isRegularFile(rulesFile)) {
+        CompiledRuleSet ruleSet = read(rulesFile);
+        if (ruleSet.getInputHash() == inputHash
+            && ruleSet.getPatternSize() == patternSize
+            && ruleSet.getExtractionMode() == extractionMode
+            && ruleSet.getSymmetry() == symmetry
+            && Double.compare(ruleSet.getAvoidEmptyPattern(), avoidEmptyPattern) == 0) {
+          return ruleSet;
+        }
+      }
+    } catch (IOException e) {
+      //outdated or damaged file, it is replaced below
+    }
+
+    CompiledRuleSet ruleSet =
+        CompiledRuleSet.compile(input, inputHash, patternSize, extractionMode, symmetry, avoidEmptyPattern, start);
+    try {
+      write(ruleSet, rulesFile);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    return ruleSet;
+  }
+
+  /**
+   * Write the rule set to a temporary file next to the target and move it into place, so concurrent readers either map
+   * the previous file or the complete new one.
+   */
+  public static void write(CompiledRuleSet ruleSet, Path file) throws IOException {
+    List<Pattern3D> patterns = ruleSet.getPatterns();
+    AdjacencyRules adjacency = ruleSet.getAdjacencyRules();
+    int patternCount = patterns.size();
+    int denseCount = adjacency.getPatternCount();
+    int patternVolume = ruleSet.getPatternSize() * ruleSet.getPatternSize() * ruleSet.getPatternSize();
+    PatternPositions patternsByPosition = ruleSet.getPatternsByPosition();
+    int[] positions = patternsByPosition.getData();
+
+    long size = 4 * 10 + 8 + 8
+        + 4L * patternCount * patternVolume
+        + 8L * patternCount
+        + 8L * denseCount
+        + 4 * 3 + 4L * positions.length;
+    for (int d = 0; d < DIRECTIONS; d++) {
+      size += 4L * (denseCount + 1) + 4 + 4L * adjacency.getIndices(d).length;
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(size)).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(MAGIC);
+    buffer.putInt(VERSION);
+    buffer.putInt(ruleSet.getPatternSize());
+    buffer.putInt(ruleSet.getExtractionMode().ordinal());
+    buffer.putInt(ruleSet.getSymmetry().ordinal());
+    buffer.putDouble(ruleSet.getAvoidEmptyPattern());
+    buffer.putLong(ruleSet.getInputHash());
+    buffer.putInt(ruleSet.getInputSize().getX());
+    buffer.putInt(ruleSet.getInputSize().getY());
+    buffer.putInt(ruleSet.getInputSize().getZ());
+    buffer.putInt(patternCount);
+    buffer.putInt(denseCount);
+
+    for (Pattern3D pattern : patterns) {
+      buffer.asIntBuffer().put(pattern.getData());
+      buffer.position(buffer.position() + 4 * patternVolume);
+    }
+    double[] frequencies = ruleSet.getPatternFrequency().stream().mapToDouble(Double::doubleValue).toArray();
+    buffer.asDoubleBuffer().put(frequencies);
+    buffer.position(buffer.position() + 8 * patternCount);
+    buffer.asDoubleBuffer().put(ruleSet.getPatternWeights());
+    buffer.position(buffer.position() + 8 * denseCount);
+
+    for (int d = 0; d < DIRECTIONS; d++) {
+      buffer.asIntBuffer().put(adjacency.getOffsets(d));
+      buffer.position(buffer.position() + 4 * (denseCount + 1));
+      int[] indices = adjacency.getIndices(d);
+      buffer.putInt(indices.length);
+      buffer.asIntBuffer().put(indices);
+      buffer.position(buffer.position() + 4 * indices.length);
+    }
+
+    buffer.putInt(patternsByPosition.getSizeX());
+    buffer.putInt(patternsByPosition.getSizeY());
+    buffer.putInt(patternsByPosition.getSizeZ());
+    buffer.asIntBuffer().put(positions);
+    buffer.position(buffer.position() + 4 * positions.length);
+
+    buffer.flip();
+    Path temporary = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      }
+      try {
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  public static CompiledRuleSet read(Path file) throws IOException {
+    long start = System.nanoTime();
+    ByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      buffer = ByteBuffer.allocate(Math.toIntExact(channel.size())).order(ByteOrder.LITTLE_ENDIAN);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer) < 0) {
+          throw new IOException("Truncated rule set file: " + file);
+        }
+      }
+    } catch (ArithmeticException e) {
+      throw new IOException("Rule set file too large: " + file, e);
+    }
+    buffer.flip();
+    try {
+      if (buffer.getInt() != MAGIC) {
+        throw new IOException("Not a rule set file: " + file);
+      }
+      int version = buffer.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported rule set version " + version + ": " + file);
+      }
+      int patternSize = buffer.getInt();
+      ExtractionMode extractionMode = ExtractionMode.values()[buffer.getInt()];
+      Symmetry symmetry = Symmetry.values()[buffer.getInt()];
+      double avoidEmptyPattern = buffer.getDouble();
+      long inputHash = buffer.getLong();
+      Vector3<Integer> inputSize = new Vector3<>(buffer.getInt(), buffer.getInt(), buffer.getInt());
+      int patternCount = buffer.getInt();
+      int denseCount = buffer.getInt();
+      int patternVolume = patternSize * patternSize * patternSize;
+
+      int[] voxels = readInts(buffer, patternCount * patternVolume);
+      List<Pattern3D> patterns = new ArrayList<>(patternCount);
+      for (int i = 0; i < patternCount; i++) {
+        int from = i * patternVolume;
+        patterns.add(new Pattern3D(patternSize, Arrays.copyOfRange(voxels, from, from + patternVolume)));
+      }
+      double[] frequencies = readDoubles(buffer, patternCount);
+      List<Double> patternFrequency = new ArrayList<>(patternCount);
+      for (double frequency : frequencies) {
+        patternFrequency.add(frequency);
+      }
+      double[] patternWeights = readDoubles(buffer, denseCount);
+
+      int[][] offsets = new int[DIRECTIONS][];
+      int[][] indices = new int[DIRECTIONS][];
+      for (int d = 0; d < DIRECTIONS; d++) {
+        offsets[d] = readInts(buffer, denseCount + 1);
+        indices[d] = readInts(buffer, buffer.getInt());
+      }
+
+      int positionsX = buffer.getInt();
+      int positionsY = buffer.getInt();
+      int positionsZ = buffer.getInt();
+      PatternPositions patternsByPosition = new PatternPositions(
+          positionsX,
+          positionsY,
+          positionsZ,
+          readInts(buffer, positionsX * positionsY * positionsZ)
+      );
+
+      return new CompiledRuleSet(
+          patternSize,
+          extractionMode,
+          symmetry,
+          avoidEmptyPattern,
+          inputSize,
+          inputHash,
+          patterns,
+          patternFrequency,
+          patternsByPosition,
+          new AdjacencyRules(offsets, indices),
+          patternWeights,
+          System.nanoTime() - start
+      );
+    } catch (RuntimeException e) {
+      //BufferUnderflowException, IllegalArgumentException, ... of a truncated or damaged file
+      throw new IOException("Damaged rule set file: " + file, e);
+    }
+  }
+
+  private static int[] readInts(ByteBuffer buffer, int count) {
+    int[] values = new int[count];
+    IntBuffer view = buffer.asIntBuffer();
+    view.get(values);
+    buffer.position(buffer.position() + 4 * count);
+    return values;
+  }
+
+  private static double[] readDoubles(ByteBuffer buffer, int count) {
+    double[] values = new double[count];
+    DoubleBuffer view = buffer.asDoubleBuffer();
+    view.get(values);
+    buffer.position(buffer.position() + 8 * count);
+    return values;
+  }
+}
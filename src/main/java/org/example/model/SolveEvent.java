@@ -0,0 +1,38 @@
+package org.example.model;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of a solve of a {@link VoxelWfcModel}. Disabled by default.
+ */
+@Name("org.example.Solve")
+@Label("Solve")
+@Category({"WFC", "Solver"})
+@Enabled(false)
+class SolveEvent extends Event {
+
+  @Label("Seed")
+  long seed;
+
+  @Label("Input Hash")
+  long inputHash;
+
+  @Label("Cell Count")
+  int cellCount;
+
+  @Label("Pattern Count")
+  int patternCount;
+
+  @Label("Propagation Mode")
+  String propagationMode;
+
+  @Label("Status")
+  String status;
+
+  @Label("Restarts")
+  int restarts;
+}
@@ -0,0 +1,93 @@
+package org.example.model;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import org.example.shared.SolveStats;
+
+/**
+ * Collects the {@link SolveStats} of a solve. Counters of the wave and the propagator only grow, so the recorder keeps
+ * their values at the start of the solve and reports the difference.
+ */
+class SolveStatsRecorder {
+
+  private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+  private long startNanos;
+  private long startAllocatedBytes;
+  private long startBans;
+  private long startPropagatedCells;
+  private long initializationNanos;
+  private long propagationNanos;
+  private long observations;
+  private int contradictions;
+  private int rollbacks;
+
+  void start(Wave wave, Propagator propagator) {
+    startNanos = System.nanoTime();
+    startAllocatedBytes = allocatedBytes();
+    startBans = wave.banCount();
+    startPropagatedCells = propagator.propagatedCells();
+    initializationNanos = 0;
+    propagationNanos = 0;
+    observations = 0;
+    contradictions = 0;
+    rollbacks = 0;
+  }
+
+  void addInitializationTime(long nanos) {
+    initializationNanos += nanos;
+  }
+
+  void addPropagationTime(long nanos) {
+    propagationNanos += nanos;
+  }
+
+  void observation() {
+    observations++;
+  }
+
+  void contradiction() {
+    contradictions++;
+  }
+
+  void rollback() {
+    rollbacks++;
+  }
+
+  /**
+   * @param restarts number of restarts of the solve
+   * @param extractionNanos time it took to compile the rule set
+   * @param waveBytes memory held by the solver state
+   */
+  SolveStats finish(Wave wave, Propagator propagator, int restarts, long extractionNanos, long waveBytes) {
+    long allocatedBytes = allocatedBytes();
+    return new SolveStats(
+        extractionNanos,
+        System.nanoTime() - startNanos,
+        initializationNanos,
+        propagationNanos,
+        observations,
+        propagator.propagatedCells() - startPropagatedCells,
+        wave.banCount() - startBans,
+        contradictions,
+        rollbacks,
+        restarts,
+        waveBytes,
+        allocatedBytes >= 0 && startAllocatedBytes >= 0 ? allocatedBytes - startAllocatedBytes : -1
+    );
+  }
+
+  /**
+   * @return bytes allocated by the current thread so far or -1 if the JVM does not track them
+   */
+  private static long allocatedBytes() {
+    if (!(THREADS instanceof com.sun.management.ThreadMXBean)) {
+      return -1;
+    }
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+    if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+      return -1;
+    }
+    return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+}
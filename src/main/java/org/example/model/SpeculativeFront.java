@@ -0,0 +1,230 @@
+package org.example.model;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+/**
+ * Propagation front of a single observation that runs without modifying the wave. Reduced domains are kept in a private
+ * overlay and every cell the front reads or writes is claimed, so fronts of different observations can run concurrently
+ * on the same wave and afterwards be checked against each other.
+ * <p>
+ * A front is reused for many observations with {@link #reset(int, int)}. Its buffers only grow and resetting only
+ * touches the cells claimed by the previous observation, so propagating a front does not allocate.
+ */
+class SpeculativeFront implements Callable<Boolean> {
+
+  private static final int UNTOUCHED = -1;
+  private static final int CLAIMED = -2;
+
+  private final Wave wave;
+  private final AdjacencyRules rules;
+  private final CellNeighbours neighbours;
+  private final int wordsPerCell;
+
+  /**
+   * Per cell: {@link #UNTOUCHED}, {@link #CLAIMED} if the front only read it or the overlay slot of its reduced domain.
+   */
+  private final int[] cellStates;
+  /**
+   * All cells whose state is not {@link #UNTOUCHED}.
+   */
+  private int[] claimed = new int[64];
+  private int claimedSize = 0;
+  /**
+   * Reduced domains in the order they were first changed. Slot s holds the domain of overlayCells[s] in the words
+   * [s * wordsPerCell, (s + 1) * wordsPerCell).
+   */
+  private int[] overlayCells = new int[16];
+  private long[] overlay;
+  private int overlaySize = 0;
+
+  private int[] cellsToPropagate = new int[64];
+  private int queueHead = 0;
+  private int queueSize = 0;
+  private final long[] possiblePatterns;
+  private final long[] neighbourDomain;
+
+  private int cell;
+  private int pattern;
+  private boolean consistent = false;
+
+  SpeculativeFront(Wave wave, AdjacencyRules rules, CellNeighbours neighbours) {
+    this.wave = wave;
+    this.rules = rules;
+    this.neighbours = neighbours;
+    this.wordsPerCell = wave.wordsPerCell();
+    this.cellStates = new int[wave.cellCount()];
+    Arrays.fill(cellStates, UNTOUCHED);
+    this.overlay = new long[overlayCells.length * wordsPerCell];
+    this.possiblePatterns = new long[wordsPerCell];
+    this.neighbourDomain = new long[wordsPerCell];
+  }
+
+  /**
+   * Forget the previous observation and prepare the front for the given one.
+   */
+  void reset(int cell, int pattern) {
+    for (int i = 0; i < claimedSize; i++) {
+      cellStates[claimed[i]] = UNTOUCHED;
+    }
+    claimedSize = 0;
+    overlaySize = 0;
+    queueSize = 0;
+    this.cell = cell;
+    this.pattern = pattern;
+    this.consistent = false;
+  }
+
+  int getCell() {
+    return cell;
+  }
+
+  int getPattern() {
+    return pattern;
+  }
+
+  /**
+   * @return false if the observation led to a contradiction
+   */
+  boolean isConsistent() {
+    return consistent;
+  }
+
+  /**
+   * @return true if both fronts read or wrote a common cell
+   */
+  boolean overlaps(SpeculativeFront other) {
+    for (int i = 0; i < claimedSize; i++) {
+      if (other.cellStates[claimed[i]] != UNTOUCHED) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Restrict the wave to the reduced domains of the front, in the order they were first changed.
+   */
+  void apply(Propagator propagator) {
+    for (int slot = 0; slot < overlaySize; slot++) {
+      System.arraycopy(overlay, slot * wordsPerCell, possiblePatterns, 0, wordsPerCell);
+      propagator.restrict(overlayCells[slot], possiblePatterns);
+    }
+  }
+
+  /**
+   * Memory held by the buffers of the front.
+   */
+  long byteSize() {
+    return 4L * (cellStates.length + claimed.length + overlayCells.length + cellsToPropagate.length)
+        + 8L * (overlay.length + possiblePatterns.length + neighbourDomain.length);
+  }
+
+  /**
+   * Collapse the cell and propagate the change through the overlay.
+   *
+   * @return true -> success, false -> contradiction
+   */
+  @Override
+  public Boolean call() {
+    claim(cell);
+    int collapsed = addSlot(cell) * wordsPerCell;
+    Arrays.fill(overlay, collapsed, collapsed + wordsPerCell, 0L);
+    overlay[collapsed + (pattern >>> 6)] = 1L << pattern;
+    enqueue(cell);
+
+    while (queueSize > 0) {
+      int currentCell = cellsToPropagate[queueHead];
+      queueHead = (queueHead + 1) % cellsToPropagate.length;
+      queueSize--;
+      //only cells whose domain was reduced are queued, so they always have a slot
+      int currentOffset = cellStates[currentCell] * wordsPerCell;
+
+      for (int i = 0; i < Direction3D.values().length; i++) {
+        int neighbourIndex = neighbours.neighbour(currentCell, i);
+        if (neighbourIndex < 0) {
+          continue;
+        }
+        claim(neighbourIndex);
+        if (wave.count(neighbourIndex) == 1 && wave.get(neighbourIndex, rules.getFloorIndex())) {
+          continue;
+        }
+        int neighbourSlot = cellStates[neighbourIndex];
+        if (neighbourSlot >= 0) {
+          System.arraycopy(overlay, neighbourSlot * wordsPerCell, neighbourDomain, 0, wordsPerCell);
+        } else {
+          wave.copyDomain(neighbourIndex, neighbourDomain);
+        }
+        Arrays.fill(possiblePatterns, 0L);
+        int[] offsets = rules.getOffsets(i);
+        int[] indices = rules.getIndices(i);
+        for (int w = 0; w < wordsPerCell; w++) {
+          for (long word = overlay[currentOffset + w]; word != 0; word &= word - 1) {
+            int p = (w << 6) + Long.numberOfTrailingZeros(word);
+            for (int k = offsets[p]; k < offsets[p + 1]; k++) {
+              possiblePatterns[indices[k] >>> 6] |= 1L << indices[k];
+            }
+          }
+        }
+
+        int neighbourCount = 0;
+        int possibleCount = 0;
+        for (int w = 0; w < wordsPerCell; w++) {
+          neighbourCount += Long.bitCount(neighbourDomain[w]);
+          possiblePatterns[w] &= neighbourDomain[w];
+          possibleCount += Long.bitCount(possiblePatterns[w]);
+        }
+        if (possibleCount == 0) {
+          return false;
+        }
+        if (possibleCount < neighbourCount) {
+          if (neighbourSlot < 0) {
+            neighbourSlot = addSlot(neighbourIndex);
+          }
+          System.arraycopy(possiblePatterns, 0, overlay, neighbourSlot * wordsPerCell, wordsPerCell);
+          enqueue(neighbourIndex);
+        }
+      }
+    }
+    consistent = true;
+    return true;
+  }
+
+  private void claim(int claimedCell) {
+    if (cellStates[claimedCell] != UNTOUCHED) {
+      return;
+    }
+    if (claimedSize == claimed.length) {
+      claimed = Arrays.copyOf(claimed, claimedSize * 2);
+    }
+    claimed[claimedSize++] = claimedCell;
+    cellStates[claimedCell] = CLAIMED;
+  }
+
+  /**
+   * Give a claimed cell a slot in the overlay.
+   */
+  private int addSlot(int overlayCell) {
+    if (overlaySize == overlayCells.length) {
+      overlayCells = Arrays.copyOf(overlayCells, overlaySize * 2);
+      overlay = Arrays.copyOf(overlay, overlayCells.length * wordsPerCell);
+    }
+    overlayCells[overlaySize] = overlayCell;
+    cellStates[overlayCell] = overlaySize;
+    return overlaySize++;
+  }
+
+  private void enqueue(int queuedCell) {
+    if (queueSize == cellsToPropagate.length) {
+      //unroll the ring into a buffer twice the size
+      int[] grown = new int[queueSize * 2];
+      for (int i = 0; i < queueSize; i++) {
+        grown[i] = cellsToPropagate[(queueHead + i) % cellsToPropagate.length];
+      }
+      cellsToPropagate = grown;
+      queueHead = 0;
+    }
+    cellsToPropagate[(queueHead + queueSize) % cellsToPropagate.length] = queuedCell;
+    queueSize++;
+  }
+}
@@ -0,0 +1,222 @@
+package org.example.model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * AC-4 style propagation. For every cell, direction and pattern the number of patterns in the neighbouring cell that
+ * support it is stored. Banning a pattern only decrements the counters it contributes to and a pattern is banned as
+ * soon as one of its counters reaches zero.
+ */
+class SupportCountPropagator extends Propagator {
+
+  private static final int DIRECTIONS = Direction3D.values().length;
+  private static final int[] OPPOSITE = new int[DIRECTIONS];
+
+  static {
+    for (Direction3D direction : Direction3D.values()) {
+      OPPOSITE[direction.ordinal()] = Utils.opposite(direction).ordinal();
+    }
+  }
+
+  private final int patternCount;
+  /**
+   * supports[(cell * 6 + d) * patternCount + q]: number of patterns in the neighbour of cell in direction d allowing q.
+   */
+  private final int[] supports;
+  /**
+   * Pending bans stored as (cell, pattern) pairs.
+   */
+  private int[] banStack = new int[64];
+  private int banStackSize = 0;
+  /**
+   * Bans whose counter updates were applied since the last decision point, stored as (cell, pattern) pairs.
+   */
+  private int[] propagated = new int[64];
+  private int propagatedSize = 0;
+  private final boolean[] dirty;
+  private final int[] dirtyCells;
+  private int dirtyCount = 0;
+  private boolean contradiction = false;
+
+  SupportCountPropagator(
+      Wave wave,
+      AdjacencyRules rules,
+      CellNeighbours neighbours,
+      IntConsumer domainListener,
+      AbortCheck abortCheck
+  ) {
+    super(wave, rules, neighbours, domainListener, abortCheck);
+    this.patternCount = rules.getPatternCount();
+    this.supports = new int[wave.cellCount() * DIRECTIONS * patternCount];
+    this.dirty = new boolean[wave.cellCount()];
+    this.dirtyCells = new int[wave.cellCount()];
+  }
+
+  /**
+   * Recount all supports from the current wave and ban every pattern that is not supported.
+   */
+  @Override
+  void reset(List<Integer> changedCells) {
+    banStackSize = 0;
+    propagatedSize = 0;
+    contradiction = false;
+    for (int cell = 0; cell < wave.cellCount(); cell++) {
+      if (abortCheck.poll()) {
+        //propagate() reports the failure
+        contradiction = true;
+        return;
+      }
+      for (int d = 0; d < DIRECTIONS; d++) {
+        int base = (cell * DIRECTIONS + d) * patternCount;
+        int neighbour = neighbour(cell, d);
+        if (neighbour < 0) {
+          Arrays.fill(supports, base, base + patternCount, 0);
+          continue;
+        }
+        int[] offsets = rules.getOffsets(d);
+        int[] indices = rules.getIndices(d);
+        for (int q = 0; q < patternCount; q++) {
+          int count = 0;
+          for (int k = offsets[q]; k < offsets[q + 1]; k++) {
+            if (wave.get(neighbour, indices[k])) {
+              count++;
+            }
+          }
+          supports[base + q] = count;
+        }
+      }
+    }
+    for (int cell = 0; cell < wave.cellCount(); cell++) {
+      if (isFloor(cell)) {
+        continue;
+      }
+      for (int d = 0; d < DIRECTIONS; d++) {
+        if (neighbour(cell, d) < 0) {
+          continue;
+        }
+        int base = (cell * DIRECTIONS + d) * patternCount;
+        for (int q = wave.firstPattern(cell); q >= 0; q = wave.nextPattern(cell, q + 1)) {
+          if (supports[base + q] == 0) {
+            ban(cell, q);
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  void commit() {
+    propagatedSize = 0;
+  }
+
+  /**
+   * Re-increment all counters that were decremented since the last decision point.
+   */
+  @Override
+  void rollback() {
+    banStackSize = 0;
+    contradiction = false;
+    while (propagatedSize > 0) {
+      propagatedSize -= 2;
+      updateSupports(propagated[propagatedSize], propagated[propagatedSize + 1], 1);
+    }
+  }
+
+  @Override
+  void collapse(int cell, int pattern) {
+    for (int p = wave.firstPattern(cell); p >= 0; p = wave.nextPattern(cell, p + 1)) {
+      if (p != pattern) {
+        ban(cell, p);
+      }
+    }
+  }
+
+  @Override
+  void restrict(int cell, long[] mask) {
+    for (int p = wave.firstPattern(cell); p >= 0; p = wave.nextPattern(cell, p + 1)) {
+      if ((mask[p >>> 6] & (1L << p)) == 0) {
+        ban(cell, p);
+      }
+    }
+  }
+
+  @Override
+  boolean propagate() {
+    while (banStackSize > 0 && !contradiction) {
+      if (abortCheck.poll()) {
+        contradiction = true;
+        break;
+      }
+      banStackSize -= 2;
+      int bannedCell = banStack[banStackSize];
+      int bannedPattern = banStack[banStackSize + 1];
+      if (propagatedSize == propagated.length) {
+        propagated = Arrays.copyOf(propagated, propagated.length * 2);
+      }
+      propagated[propagatedSize++] = bannedCell;
+      propagated[propagatedSize++] = bannedPattern;
+      updateSupports(bannedCell, bannedPattern, -1);
+    }
+
+    propagatedCells += dirtyCount;
+    for (int i = 0; i < dirtyCount; i++) {
+      dirty[dirtyCells[i]] = false;
+      domainListener.accept(dirtyCells[i]);
+    }
+    dirtyCount = 0;
+
+    if (contradiction) {
+      banStackSize = 0;
+      return false;
+    }
+    return true;
+  }
+
+  @Override
+  long byteSize() {
+    return 4L * supports.length + 4L * banStack.length + 4L * propagated.length + dirty.length + 4L * dirtyCells.length;
+  }
+
+  /**
+   * Add delta to the counters of all patterns supported by the given pattern in the neighbours of the given cell. When
+   * decrementing, patterns whose support drops to zero are banned.
+   */
+  private void updateSupports(int bannedCell, int bannedPattern, int delta) {
+    for (int d = 0; d < DIRECTIONS; d++) {
+      int cell = neighbour(bannedCell, d);
+      if (cell < 0 || isFloor(cell)) {
+        continue;
+      }
+      int base = (cell * DIRECTIONS + OPPOSITE[d]) * patternCount;
+      int[] offsets = rules.getOffsets(d);
+      int[] indices = rules.getIndices(d);
+      for (int k = offsets[bannedPattern]; k < offsets[bannedPattern + 1]; k++) {
+        int q = indices[k];
+        supports[base + q] += delta;
+        if (supports[base + q] == 0 && delta < 0 && wave.get(cell, q)) {
+          ban(cell, q);
+        }
+      }
+    }
+  }
+
+  private void ban(int cell, int pattern) {
+    if (!wave.ban(cell, pattern)) {
+      return;
+    }
+    if (banStackSize == banStack.length) {
+      banStack = Arrays.copyOf(banStack, banStack.length * 2);
+    }
+    banStack[banStackSize++] = cell;
+    banStack[banStackSize++] = pattern;
+    if (!dirty[cell]) {
+      dirty[cell] = true;
+      dirtyCells[dirtyCount++] = cell;
+    }
+    if (wave.count(cell) == 0) {
+      contradiction = true;
+    }
+  }
+}
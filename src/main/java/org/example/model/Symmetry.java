@@ -0,0 +1,60 @@
+package org.example.model;
+
+/**
+ * Symmetries of the input that are added as pattern variants. All of them keep the y axis, so patterns never end up
+ * upside down.
+ */
+public enum Symmetry {
+  /**
+   * Only the patterns of the input.
+   */
+  NONE(1, false),
+  /**
+   * The patterns of the input and their mirror images along the x axis.
+   */
+  REFLECTION(1, true),
+  /**
+   * The patterns of the input and their rotations by 90, 180 and 270 degrees around the y axis.
+   */
+  ROTATION(4, false),
+  /**
+   * All eight rotations and mirror images of the patterns around the y axis.
+   */
+  ROTATION_REFLECTION(4, true);
+
+  private final int rotations;
+  private final boolean reflection;
+
+  Symmetry(int rotations, boolean reflection) {
+    this.rotations = rotations;
+    this.reflection = reflection;
+  }
+
+  /**
+   * @return symmetry of the rotation and reflection flags of {@link org.example.shared.VoxelWFCParameters}
+   */
+  public static Symmetry of(boolean rotation, boolean reflection) {
+    if (rotation) {
+      return reflection ? ROTATION_REFLECTION : ROTATION;
+    }
+    return reflection ? REFLECTION : NONE;
+  }
+
+  /**
+   * @return number of rotations including the identity
+   */
+  public int getRotations() {
+    return rotations;
+  }
+
+  public boolean isReflection() {
+    return reflection;
+  }
+
+  /**
+   * @return number of variants of every pattern including the pattern itself
+   */
+  public int size() {
+    return reflection ? 2 * rotations : rotations;
+  }
+}
@@ -0,0 +1,239 @@
+package org.example.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import org.example.shared.Vector3;
+
+/**
+ * Pattern extraction of {@link ExtractionMode#TILED}. The input is cut into NxNxN tiles once. Rotated and mirrored
+ * variants are derived per unique pattern with {@link PatternSymmetry} and placed on a transformed grid of tile
+ * indices, so the input itself is never rotated and every tile is only copied and hashed once.
+ */
+final class TiledExtraction {
+
+  private final int patternSize;
+  private final PatternSymmetry patternSymmetry;
+
+  private final List<Pattern3D> patterns;
+  private final List<Double> patternFrequency;
+  private final HashMap<Pattern3D, Integer> patternIndices = new HashMap<>();
+  /**
+   * Index of the rotated and of the mirrored variant of every pattern, -1 if it was not derived yet.
+   */
+  private int[] rotated = new int[0];
+  private int[] mirrored = new int[0];
+
+  private int tilesX;
+  private int tilesY;
+  private int tilesZ;
+  /**
+   * Pattern index of every tile of the input, indexed by x + (y + z * tilesY) * tilesX.
+   */
+  private int[] tiles;
+  /**
+   * Number of patterns that occur in the input itself, all other patterns are variants of them.
+   */
+  private int baseCount;
+
+  /**
+   * @param patterns receives the unique patterns, the empty pattern at index 0
+   * @param patternFrequency receives the relative frequency of every pattern
+   */
+  TiledExtraction(int patternSize, List<Pattern3D> patterns, List<Double> patternFrequency) {
+    this.patternSize = patternSize;
+    this.patternSymmetry = new PatternSymmetry(patternSize);
+    this.patterns = patterns;
+    this.patternFrequency = patternFrequency;
+  }
+
+  /**
+   * Extract the patterns of all tiles of the padded input and of its symmetric variants.
+   *
+   * @param input padded input
+   * @param symmetry variants that are added
+   * @param avoidEmptyPattern how much should empty space be avoided
+   */
+  void extract(Grid3D input, Symmetry symmetry, double avoidEmptyPattern) {
+    //Add empty pattern at pos 0
+    indexOf(new Pattern3D(patternSize));
+    patternFrequency.set(0, 0.000001);
+
+    tilesX = input.size().getX() / patternSize;
+    tilesY = input.size().getY() / patternSize;
+    tilesZ = input.size().getZ() / patternSize;
+    tiles = new int[tilesX * tilesY * tilesZ];
+    for (int x = 0; x < tilesX; x++) {
+      for (int y = 0; y < tilesY; y++) {
+        for (int z = 0; z < tilesZ; z++) {
+          Pattern3D pattern = input.getPatternAtPosition(
+              new Vector3<>(x * patternSize, y * patternSize, z * patternSize),
+              patternSize
+          );
+          int patternIndex = indexOf(pattern);
+          tiles[x + (y + z * tilesY) * tilesX] = patternIndex;
+          count(patternIndex);
+        }
+      }
+    }
+    baseCount = patterns.size();
+
+    //the tiles of the rotated inputs, visited in the order the rotated inputs would be cut into tiles
+    List<int[]> rotations = new ArrayList<>();
+    rotations.add(tiles);
+    int sizeX = tilesX;
+    int sizeZ = tilesZ;
+    for (int r = 1; r < symmetry.getRotations(); r++) {
+      int[] previous = rotations.get(r - 1);
+      int[] next = new int[previous.length];
+      for (int x = 0; x < sizeZ; x++) {
+        for (int y = 0; y < tilesY; y++) {
+          for (int z = 0; z < sizeX; z++) {
+            int patternIndex = rotated(previous[(sizeX - z - 1) + (y + x * tilesY) * sizeX]);
+            next[x + (y + z * tilesY) * sizeZ] = patternIndex;
+            count(patternIndex);
+          }
+        }
+      }
+      rotations.add(next);
+      int swap = sizeX;
+      sizeX = sizeZ;
+      sizeZ = swap;
+    }
+    if (symmetry.isReflection()) {
+      for (int r = 0; r < rotations.size(); r++) {
+        int[] rotation = rotations.get(r);
+        int rotatedX = r % 2 == 0 ? tilesX : tilesZ;
+        int rotatedZ = r % 2 == 0 ? tilesZ : tilesX;
+        for (int x = 0; x < rotatedX; x++) {
+          for (int y = 0; y < tilesY; y++) {
+            for (int z = 0; z < rotatedZ; z++) {
+              count(mirrored(rotation[(rotatedX - x - 1) + (y + z * tilesY) * rotatedX]));
+            }
+          }
+        }
+      }
+    }
+
+    //remove all the emplty patterns from padding
+    int padding = (tilesX * tilesY * tilesZ) - ((tilesX - 2) * (tilesY - 1) * (tilesZ - 2));
+    padding *= symmetry.size();
+    double freqWithoutPadding = patternFrequency.get(0) - padding;
+    patternFrequency.set(
+        0,
+        freqWithoutPadding > 0 ? freqWithoutPadding * (1 - avoidEmptyPattern) /* + 3 TODO magic number remove */ : 0.01
+    );
+
+    int totalPatternCount = tilesX * tilesY * tilesZ * symmetry.size();
+    for (int i = 0; i < patternFrequency.size(); i++) {
+      double repetitions = patternFrequency.get(i);
+      patternFrequency.set(i, repetitions / totalPatternCount);
+    }
+  }
+
+  /**
+   * @return pattern of every tile of the input, rotated and mirrored variants have no position of their own
+   */
+  PatternPositions getPatternsByPosition() {
+    return new PatternPositions(tilesX, tilesY, tilesZ, tiles);
+  }
+
+  /**
+   * Find the adjacency constraints of the tiles of the input and remap them to every symmetric variant, see
+   * {@link PatternSymmetry#transform(Direction3D, int, boolean)}.
+   */
+  AdjacencyRules findNeighbours(Symmetry symmetry) {
+    HashMap<Integer, Neighbours> baseNeighbours = new HashMap<>();
+    baseNeighbours.put(-1, new Neighbours());
+    CellNeighbours tileNeighbours = new CellNeighbours(tilesX, tilesY, tilesZ);
+    Direction3D[] directions = Direction3D.values();
+    for (int tile = 0; tile < tiles.length; tile++) {
+      Neighbours neighbours = baseNeighbours.computeIfAbsent(tiles[tile], key -> new Neighbours());
+      for (int i = 0; i < directions.length; i++) {
+        int neighbour = tileNeighbours.neighbour(tile, i);
+        if (neighbour >= 0) {
+          neighbours.addNeighbour(directions[i], tiles[neighbour]);
+        } else if (directions[i] == Direction3D.DOWN) {
+          neighbours.addNeighbour(directions[i], -1);
+        }
+      }
+    }
+
+    HashMap<Integer, Neighbours> patternNeighbours = new HashMap<>();
+    for (int i = 0; i < patterns.size(); i++) {
+      patternNeighbours.put(i, new Neighbours());
+    }
+    // Border Pattern
+    patternNeighbours.put(-1, new Neighbours());
+
+    for (int mirror = 0; mirror < (symmetry.isReflection() ? 2 : 1); mirror++) {
+      for (int r = 0; r < symmetry.getRotations(); r++) {
+        int[] variants = new int[baseCount];
+        for (int p = 0; p < baseCount; p++) {
+          int variant = p;
+          for (int k = 0; k < r; k++) {
+            variant = rotated(variant);
+          }
+          variants[p] = mirror == 1 ? mirrored(variant) : variant;
+        }
+        for (Direction3D dir : Direction3D.values()) {
+          Direction3D variantDir = PatternSymmetry.transform(dir, r, mirror == 1);
+          baseNeighbours.forEach((patternIndex, neighbours) -> {
+            int variant = patternIndex == -1 ? -1 : variants[patternIndex];
+            for (int neighbour : neighbours.neighbours.get(dir)) {
+              int neighbourVariant = neighbour == -1 ? -1 : variants[neighbour];
+              patternNeighbours.get(variant).addNeighbour(variantDir, neighbourVariant);
+              if (neighbour == -1) {
+                patternNeighbours.get(-1).addNeighbour(Utils.opposite(variantDir), variant);
+              }
+            }
+          });
+        }
+      }
+    }
+    return AdjacencyRules.compile(patternNeighbours, patterns.size());
+  }
+
+  /**
+   * @return index of the given pattern, it is added if it is new
+   */
+  private int indexOf(Pattern3D pattern) {
+    Integer existingIndex = patternIndices.get(pattern);
+    if (existingIndex != null) {
+      return existingIndex;
+    }
+    int index = patterns.size();
+    patterns.add(pattern);
+    patternIndices.put(pattern, index);
+    patternFrequency.add(0d);
+    if (index == rotated.length) {
+      int capacity = Math.max(64, index * 2);
+      rotated = Arrays.copyOf(rotated, capacity);
+      mirrored = Arrays.copyOf(mirrored, capacity);
+      Arrays.fill(rotated, index, capacity, -1);
+      Arrays.fill(mirrored, index, capacity, -1);
+    }
+    return index;
+  }
+
+  private void count(int patternIndex) {
+    patternFrequency.set(patternIndex, patternFrequency.get(patternIndex) + 1);
+  }
+
+  private int rotated(int patternIndex) {
+    if (rotated[patternIndex] < 0) {
+      int variant = indexOf(patternSymmetry.rotate(patterns.get(patternIndex)));
+      rotated[patternIndex] = variant;
+    }
+    return rotated[patternIndex];
+  }
+
+  private int mirrored(int patternIndex) {
+    if (mirrored[patternIndex] < 0) {
+      int variant = indexOf(patternSymmetry.mirror(patterns.get(patternIndex)));
+      mirrored[patternIndex] = variant;
+    }
+    return mirrored[patternIndex];
+  }
+}
@@ -0,0 +1,218 @@
+package org.example.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import org.example.shared.CancellationToken;
+import org.example.shared.Vector3;
+
+/**
+ * Solves outputs that are too large for a single wave by splitting them into blocks along the X and Z axis. Every block
+ * spans the full height and is solved in a wave of its own that additionally covers an overlap around the block, so the
+ * block does not commit to patterns that cannot be continued by its neighbours. Only the core of a block is committed.
+ * <p>
+ * Blocks are processed in wavefronts along bx + 2 * bz. When a block is solved, the blocks before it along X and Z are
+ * already committed and constrain its boundary, and the block before it along X has already seen the block before it
+ * along Z, so the corner between them can be continued. Blocks of the same wavefront do not touch each other and are
+ * solved in parallel. The result only depends on the seed of the template model, not on the scheduling.
+ */
+public class TiledSolver {
+
+  private final VoxelWfcModel template;
+  private final int blockSize;
+  private final int overlap;
+  private final ForkJoinPool pool;
+  private int blockRetries = 5;
+
+  /**
+   * @param template model that provides the patterns, parameters, output size and the base seed
+   * @param blockSize size of the core of a block in cells along X and Z
+   * @param overlap number of cells a block looks ahead into its neighbours, has to be smaller than the block size
+   * @param pool pool to solve the blocks of a wavefront on
+   */
+  public TiledSolver(VoxelWfcModel template, int blockSize, int overlap, ForkJoinPool pool) {
+    if (blockSize < 1) {
+      throw new IllegalArgumentException("Block size has to be positive.");
+    }
+    if (overlap < 0 || overlap >= blockSize) {
+      throw new IllegalArgumentException("Overlap has to be in [0, blockSize).");
+    }
+    this.template = template;
+    this.blockSize = blockSize;
+    this.overlap = overlap;
+    this.pool = pool;
+  }
+
+  public TiledSolver(VoxelWfcModel template, int blockSize, int overlap) {
+    this(template, blockSize, overlap, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * @param blockRetries number of seeds tried per block before giving up
+   */
+  public void setBlockRetries(int blockRetries) {
+    this.blockRetries = blockRetries;
+  }
+
+  /**
+   * Solve all blocks.
+   *
+   * @return 3D-Array of output model or null if a block could not be solved
+   */
+  public int[][][] solve() {
+    Vector3<Integer> worldSize = template.getWaveSize();
+    int sizeX = worldSize.getX();
+    int sizeY = worldSize.getY();
+    int sizeZ = worldSize.getZ();
+    int[] world = new int[sizeX * sizeY * sizeZ];
+    Arrays.fill(world, VoxelWfcModel.CELL_DEFAULT);
+
+    int blocksX = ceilDiv(sizeX - 2, blockSize);
+    int blocksZ = ceilDiv(sizeZ - 2, blockSize);
+    for (int wavefront = 0; wavefront < blocksX + 2 * (blocksZ - 1); wavefront++) {
+      List<Callable<Block>> tasks = new ArrayList<>();
+      for (int bz = 0; bz < blocksZ; bz++) {
+        int bx = wavefront - 2 * bz;
+        if (bx < 0 || bx >= blocksX) {
+          continue;
+        }
+        Block block = new Block(bx, bz, bx + bz * blocksX);
+        tasks.add(() -> solveBlock(block, world));
+      }
+      try {
+        //Commit after the whole wavefront, so no block reads cells another block of the same wavefront is writing
+        for (Future<Block> future : pool.invokeAll(tasks)) {
+          Block block = future.get();
+          if (block.cellPatterns == null) {
+            return null;
+          }
+          block.commit(world);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return null;
+      } catch (ExecutionException e) {
+        throw new IllegalStateException("Solving block failed", e.getCause());
+      }
+    }
+
+    int floorIndex = template.getAdjacencyRules().getFloorIndex();
+    for (int z = 0; z < sizeZ; z++) {
+      for (int y = 0; y < sizeY; y++) {
+        for (int x = 0; x < sizeX; x++) {
+          int cellIndex = x + y * sizeX + z * sizeX * sizeY;
+          if (y == sizeY - 1) {
+            world[cellIndex] = floorIndex;
+          } else if (world[cellIndex] < 0) {
+            world[cellIndex] = 0;
+          }
+        }
+      }
+    }
+    return template.generateOutput(world, worldSize);
+  }
+
+  /**
+   * Solve the wave around a block, constrained by all cells that were committed by earlier wavefronts.
+   *
+   * @return the block with the patterns of its wave or without if all retries failed
+   */
+  private Block solveBlock(Block block, int[] world) {
+    Vector3<Integer> worldSize = template.getWaveSize();
+    int sizeY = worldSize.getY();
+    //Wave covers the core, the overlap and one ring of cells around them
+    int x0 = Math.max(1, block.coreX0 - overlap) - 1;
+    int x1 = Math.min(worldSize.getX() - 2, block.coreX0 + blockSize - 1 + overlap) + 1;
+    int z0 = Math.max(1, block.coreZ0 - overlap) - 1;
+    int z1 = Math.min(worldSize.getZ() - 2, block.coreZ0 + blockSize - 1 + overlap) + 1;
+    Vector3<Integer> waveSize = new Vector3<>(x1 - x0 + 1, sizeY, z1 - z0 + 1);
+
+    int[] constraints = new int[waveSize.getX() * sizeY * waveSize.getZ()];
+    for (int z = z0; z <= z1; z++) {
+      for (int y = 0; y < sizeY; y++) {
+        for (int x = x0; x <= x1; x++) {
+          int worldCell = x + y * worldSize.getX() + z * worldSize.getX() * sizeY;
+          int constraint = world[worldCell];
+          boolean ring = x == x0 || x == x1 || z == z0 || z == z1;
+          boolean worldPadding = x == 0 || x == worldSize.getX() - 1 || z == 0 || z == worldSize.getZ() - 1;
+          if (constraint < 0 && ring && !worldPadding && y > 0 && y < sizeY - 1) {
+            constraint = VoxelWfcModel.CELL_OPEN;
+          }
+          constraints[localIndex(x - x0, y, z - z0, waveSize)] = constraint;
+        }
+      }
+    }
+
+    long blockSeed = PortfolioSolver.deriveSeed(template.getSeed(), block.index + 1);
+    for (int retry = 0; retry < blockRetries; retry++) {
+      VoxelWfcModel model = new VoxelWfcModel(
+          template, PortfolioSolver.deriveSeed(blockSeed, retry), waveSize, constraints
+      );
+      if (model.solveWave(new CancellationToken(), -1).isSolved()) {
+        int[] cellPatterns = new int[constraints.length];
+        for (int cellIndex = 0; cellIndex < cellPatterns.length; cellIndex++) {
+          cellPatterns[cellIndex] = model.getCellPattern(cellIndex);
+        }
+        block.setResult(cellPatterns, x0, z0, waveSize);
+        return block;
+      }
+    }
+    return block;
+  }
+
+  private static int localIndex(int x, int y, int z, Vector3<Integer> size) {
+    return x + y * size.getX() + z * size.getX() * size.getY();
+  }
+
+  private static int ceilDiv(int a, int b) {
+    return (a + b - 1) / b;
+  }
+
+  /**
+   * A block of the output and the solved wave around it.
+   */
+  private class Block {
+
+    private final int index;
+    private final int coreX0;
+    private final int coreZ0;
+    private int[] cellPatterns;
+    private int waveX0;
+    private int waveZ0;
+    private Vector3<Integer> waveSize;
+
+    Block(int bx, int bz, int index) {
+      this.index = index;
+      //Cell 0 is padding
+      this.coreX0 = 1 + bx * blockSize;
+      this.coreZ0 = 1 + bz * blockSize;
+    }
+
+    void setResult(int[] cellPatterns, int waveX0, int waveZ0, Vector3<Integer> waveSize) {
+      this.cellPatterns = cellPatterns;
+      this.waveX0 = waveX0;
+      this.waveZ0 = waveZ0;
+      this.waveSize = waveSize;
+    }
+
+    /**
+     * Copy the patterns of the core cells into the world.
+     */
+    void commit(int[] world) {
+      Vector3<Integer> worldSize = template.getWaveSize();
+      int coreX1 = Math.min(worldSize.getX() - 2, coreX0 + blockSize - 1);
+      int coreZ1 = Math.min(worldSize.getZ() - 2, coreZ0 + blockSize - 1);
+      for (int z = coreZ0; z <= coreZ1; z++) {
+        for (int y = 1; y < worldSize.getY() - 1; y++) {
+          for (int x = coreX0; x <= coreX1; x++) {
+            world[localIndex(x, y, z, worldSize)] = cellPatterns[localIndex(x - waveX0, y, z - waveZ0, waveSize)];
+          }
+        }
+      }
+    }
+  }
+}
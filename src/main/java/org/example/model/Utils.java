@@ -42,6 +42,16 @@ public class Utils {
                 return direction3D;
         }
     }
+    public static Direction3D mirrorXDir(Direction3D direction3D) {
+        switch (direction3D) {
+            case LEFT:
+                return Direction3D.RIGHT;
+            case RIGHT:
+                return Direction3D.LEFT;
+            default:
+                return direction3D;
+        }
+    }
     public static Direction3D opposite(Direction3D direction3D) {
         switch (direction3D) {
             case LEFT:
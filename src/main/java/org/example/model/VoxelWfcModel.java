@@ -1,15 +1,19 @@
 package org.example.model;
 
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Queue;
 import java.util.Random;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import org.example.shared.CancellationToken;
 import org.example.shared.IVoxelAlgorithm;
+import org.example.shared.SolveResult;
+import org.example.shared.SolveResult.Status;
+import org.example.shared.SolveStats;
+import org.example.shared.SolverListener;
 import org.example.shared.Vector3;
 
 /**
@@ -17,31 +21,62 @@ import org.example.shared.Vector3;
  */
 public class VoxelWfcModel implements IVoxelAlgorithm {
 
+  /**
+   * Cell constraint: initialize the cell like in an unconstrained solve (padding, floor or all patterns).
+   */
+  static final int CELL_DEFAULT = -1;
+  /**
+   * Cell constraint: allow all patterns, even if the cell is part of the padding.
+   */
+  static final int CELL_OPEN = -2;
+  /**
+   * Minimum Chebyshev distance in cells between cells that are observed in the same speculative step.
+   */
+  private static final int SPECULATIVE_DISTANCE = 6;
 
   //Parameters
-  private Grid3D input;
-  private int patternSize;
-  private boolean rotation;
-  private double avoidEmptyPattern;
+  private final CompiledRuleSet ruleSet;
   private Vector3<Integer> outputSize;
+  private PropagationMode propagationMode;
+  private int[] cellConstraints;
 
   //Internal Parameters
   private int maximumTries = 500;
   private int maxPropagationTries = 10;
+  private int speculativeFronts = 1;
+  private ForkJoinPool speculativePool = ForkJoinPool.commonPool();
+  /**
+   * Fronts of {@link #observeSpeculatively()}, created on first use and reused for every step.
+   */
+  private final List<SpeculativeFront> speculativeFrontBuffers = new ArrayList<>();
 
   //Internal Datastructures
   private Random rng;
-
-  private List<Pattern3D> patterns;
-  private List<Double> patternFrequency;
-  private HashMap<Integer, Neighbours> patternNeighbours;
-  private List<HashMap<Vector3<Integer>, Integer>> patternsByPosition;
-  private List<List<Integer>> wave;
-  private List<Double> entropy;
+  private long rngSeed;
+  private final AbortCheck abortCheck = new AbortCheck();
+  private SolverListener listener = SolverListener.NONE;
+  private final SolveStatsRecorder stats = new SolveStatsRecorder();
+  /**
+   * Observations of the current try stored as (cell, pattern) pairs.
+   */
+  private int[] observations = new int[64];
+  private int observationCount = 0;
+  private DecisionLog decisionLog;
+
+  private final List<Pattern3D> patterns;
+  private final int patternSize;
+  private final AdjacencyRules adjacency;
+  private final int floorIndex;
+  private Wave wave;
+  private CellNeighbours cellNeighbours;
+  private Propagator propagator;
+  private double[] entropy;
+  private double[] entropyNoise;
+  private EntropyHeap entropyHeap;
   private Double baseEntropy;
 
   /**
-   * Initialization of the algorithm
+   * Initialization of the algorithm. The patterns of the input are taken from {@link RuleSetCache#shared()}.
    *
    * @param input 3D-Array of input model
    * @param patternSize size of NxNxN patterns that should be extracted
@@ -58,19 +93,126 @@ public class VoxelWfcModel implements IVoxelAlgorithm {
       double avoidEmptyPattern,
       long rngSeed
   ) {
-    this.input = new Grid3D(input, patternSize);
-    this.patternSize = patternSize;
-    this.rotation = rotation;
-    this.avoidEmptyPattern = avoidEmptyPattern;
+    this(input, patternSize, outputSize, rotation, avoidEmptyPattern, rngSeed, PropagationMode.DOMAIN_FILTER);
+  }
+
+  /**
+   * Initialization of the algorithm. The patterns of the input are taken from {@link RuleSetCache#shared()}.
+   *
+   * @param input 3D-Array of input model
+   * @param patternSize size of NxNxN patterns that should be extracted
+   * @param outputSize size of the output
+   * @param rotation should rotation be used
+   * @param avoidEmptyPattern how much should empty space be avoided
+   * @param rngSeed seed for reproduceability
+   * @param propagationMode strategy used to propagate changes of the wave
+   */
+  public VoxelWfcModel(
+      int[][][] input,
+      int patternSize,
+      Vector3<Integer> outputSize,
+      boolean rotation,
+      double avoidEmptyPattern,
+      long rngSeed,
+      PropagationMode propagationMode
+  ) {
+    this(
+        RuleSetCache.shared().get(input, patternSize, rotation, avoidEmptyPattern),
+        outputSize,
+        rngSeed,
+        propagationMode
+    );
+  }
+
+  /**
+   * Create a model that solves against an already compiled rule set.
+   *
+   * @param ruleSet patterns and adjacency constraints, may be shared with other models
+   * @param outputSize size of the output
+   * @param rngSeed seed for reproduceability
+   * @param propagationMode strategy used to propagate changes of the wave
+   */
+  public VoxelWfcModel(
+      CompiledRuleSet ruleSet,
+      Vector3<Integer> outputSize,
+      long rngSeed,
+      PropagationMode propagationMode
+  ) {
+    this.ruleSet = ruleSet;
+    this.patterns = ruleSet.getPatterns();
+    this.patternSize = ruleSet.getPatternSize();
+    this.adjacency = ruleSet.getAdjacencyRules();
+    this.floorIndex = adjacency.getFloorIndex();
     this.outputSize = new Vector3<>(
         outputSize.getX() + 2,
         outputSize.getY() + 2,
         outputSize.getZ() + 2
     ); // + 2 beacuse of padding
     this.rng = new Random(rngSeed);
+    this.rngSeed = rngSeed;
+    this.propagationMode = propagationMode;
+  }
+
+  public VoxelWfcModel(CompiledRuleSet ruleSet, Vector3<Integer> outputSize, long rngSeed) {
+    this(ruleSet, outputSize, rngSeed, PropagationMode.DOMAIN_FILTER);
+  }
+
+  /**
+   * Create a model that shares the rule set and parameters of the given model, but solves with its own wave and random
+   * generator.
+   *
+   * @param template model to take the patterns and parameters from
+   * @param rngSeed seed for reproduceability
+   */
+  VoxelWfcModel(VoxelWfcModel template, long rngSeed) {
+    this(template, rngSeed, template.outputSize, null);
+  }
+
+  /**
+   * Create a model that shares the rule set and parameters of the given model and solves a wave of a different size
+   * whose cells may be constrained.
+   *
+   * @param template model to take the patterns and parameters from
+   * @param rngSeed seed for reproduceability
+   * @param waveSize size of the wave including padding
+   * @param cellConstraints for every cell of the wave either a pattern index of {@link #getAdjacencyRules()} the cell
+   * is fixed to, {@link #CELL_DEFAULT} or {@link #CELL_OPEN}. May be null.
+   */
+  VoxelWfcModel(VoxelWfcModel template, long rngSeed, Vector3<Integer> waveSize, int[] cellConstraints) {
+    this.ruleSet = template.ruleSet;
+    this.patterns = template.patterns;
+    this.patternSize = template.patternSize;
+    this.adjacency = template.adjacency;
+    this.floorIndex = template.floorIndex;
+    this.outputSize = waveSize;
+    this.cellConstraints = cellConstraints;
+    this.propagationMode = template.propagationMode;
+    this.maximumTries = template.maximumTries;
+    this.maxPropagationTries = template.maxPropagationTries;
+    this.speculativeFronts = template.speculativeFronts;
+    this.speculativePool = template.speculativePool;
+    this.rng = new Random(rngSeed);
+    this.rngSeed = rngSeed;
+  }
 
-    findPatterns();
-    findNeighbours();
+  /**
+   * Allocate the datastructures that are used during a single solve. This happens lazily, so a model that only serves
+   * as template does not hold a wave.
+   */
+  private void initializeSolverState() {
+    this.wave = new Wave(outputSize.getX() * outputSize.getY() * outputSize.getZ(), ruleSet.getPatternWeights());
+    this.entropy = new double[wave.cellCount()];
+    this.entropyNoise = new double[wave.cellCount()];
+    this.entropyHeap = new EntropyHeap(wave.cellCount());
+    this.cellNeighbours = new CellNeighbours(outputSize.getX(), outputSize.getY(), outputSize.getZ());
+    this.propagator = Propagator.create(
+        propagationMode,
+        wave,
+        adjacency,
+        cellNeighbours,
+        this::updateEntropy,
+        abortCheck
+    );
   }
 
   /**
@@ -79,299 +221,429 @@ public class VoxelWfcModel implements IVoxelAlgorithm {
    * @return 3D-Array of the output model.
    */
   public int[][][] solve() {
+    return solve(new CancellationToken(), null).getOutput();
+  }
+
+  /**
+   * Generate a new model with the given parameters. The token and the deadline are checked in the main loop and while
+   * propagating, so an aborted solve returns shortly after the request.
+   *
+   * @param token token to cancel the solve from another thread
+   * @param timeout time budget of the solve, null -> no deadline
+   * @return result with the output model or the reason why there is none
+   */
+  @Override
+  public SolveResult solve(CancellationToken token, Duration timeout) {
+    SolveResult result = solveWave(token, timeout != null ? timeout.toNanos() : -1);
+    if (!result.isSolved()) {
+      return result;
+    }
+    return new SolveResult(Status.SOLVED, generateOutput(), result.getTries(), result.getStats());
+  }
+
+  /**
+   * Run the algorithm until every cell of the wave is collapsed.
+   *
+   * @param timeoutNanos time budget, negative -> no deadline
+   * @return result without output, the solution is left in the wave
+   */
+  SolveResult solveWave(CancellationToken token, long timeoutNanos) {
+    SolveEvent event = new SolveEvent();
+    event.begin();
+    SolveResult result = search(token, timeoutNanos);
+    event.end();
+    if (event.shouldCommit()) {
+      event.seed = rngSeed;
+      event.inputHash = ruleSet.getInputHash();
+      event.cellCount = wave.cellCount();
+      event.patternCount = wave.patternCount();
+      event.propagationMode = propagationMode.name();
+      event.status = result.getStatus().name();
+      event.restarts = result.getTries();
+      event.commit();
+    }
+    return result;
+  }
+
+  private SolveResult search(CancellationToken token, long timeoutNanos) {
     //Initialization
-    ArrayList<Integer> borderCells = initializeWave();
+    if (wave == null) {
+      initializeSolverState();
+    }
+    abortCheck.reset(token, timeoutNanos);
+    stats.start(wave, propagator);
+    observationCount = 0;
+    decisionLog = null;
+    ArrayList<Integer> borderCells = resetWave();
     baseEntropy = getEntropy(0);
-    int collapsedCells = (int) wave.stream().filter(l -> l.size() == 1).count();
     int tries = 0;
     int propagationTries = 0;
-    this.entropy = wave.stream().map(this::getEntropy).collect(Collectors.toList());
 
-    System.out.print("Attempt number: ");
     //main loop
-    while (collapsedCells < outputSize.getX() * outputSize.getY() * outputSize.getZ() && tries < maximumTries) {
+    while (wave.collapsedCount() < wave.cellCount() && tries < maximumTries && !abortCheck.check()) {
 
-      //create backup if propagation fails
-      List<List<Integer>> snapshot = new ArrayList<>();
-      wave.forEach(cell -> snapshot.add(new ArrayList<>(cell)));
+      //new decision point, a failed propagation only rolls back the changes made after it
+      wave.clearTrail();
+      propagator.commit();
+      int stepObservations = observationCount;
 
       //solve
       boolean success = false;
-      if (!borderCells.isEmpty()) {
+      boolean borderPropagation = !borderCells.isEmpty();
+      if (borderPropagation) {
         //Border cells need to be propagated first
-        success = propagate(borderCells);
+        long start = System.nanoTime();
+        propagator.reset(borderCells);
+        stats.addPropagationTime(System.nanoTime() - start);
+        success = propagate();
         borderCells.clear();
+      } else if (speculativeFronts > 1) {
+        success = observeSpeculatively();
       } else {
         //collapse min entropy cell
         int minEntropyIndex = getLowestEntropyCell();
-        wave.set(minEntropyIndex, Collections.singletonList(selectRandomPattern(minEntropyIndex)));
-        this.entropy.set(minEntropyIndex, getEntropy(minEntropyIndex));
-        success = propagate(Collections.singletonList(minEntropyIndex));
+        observe(minEntropyIndex, selectRandomPattern(minEntropyIndex));
+        success = propagate();
       }
 
+      if (abortCheck.getReason() != null) {
+        break;
+      }
       if (!success) {
+        stats.contradiction();
+        listener.onContradiction();
+        if (borderPropagation) {
+          //Propagating the border involves no random decisions, so restarting would fail the same way
+          listener.onComplete(Status.NO_SOLUTION, tries);
+          return new SolveResult(Status.NO_SOLUTION, null, tries, finishStats(tries));
+        }
         if (propagationTries >= maxPropagationTries) {
           tries++;
-          System.out.print(tries + ",");
-          borderCells = initializeWave();
-          this.entropy = wave.stream().map(this::getEntropy).collect(Collectors.toList());
+          observationCount = 0;
+          RestartEvent restart = new RestartEvent();
+          if (restart.shouldCommit()) {
+            restart.seed = rngSeed;
+            restart.tries = tries;
+            restart.collapsedCells = wave.collapsedCount();
+            restart.cellCount = wave.cellCount();
+            restart.commit();
+          }
+          listener.onRestart(tries);
+          borderCells = resetWave();
         } else {
-          wave = snapshot;
-          this.entropy = wave.stream().map(this::getEntropy).collect(Collectors.toList());
+          int restoredPatterns = wave.trailLength();
+          propagator.rollback();
+          wave.rollback(this::updateEntropy);
+          observationCount = stepObservations;
+          stats.rollback();
+          listener.onRollback(restoredPatterns);
           propagationTries++;
         }
       } else {
         propagationTries = 0;
+        listener.onPropagation(wave.collapsedCount(), wave.cellCount());
       }
-      collapsedCells = (int) wave.stream().filter(l -> l.size() == 1).count();
     }
-    System.out.println();
-    if (tries >= maximumTries) {
-      System.out.println("No solution after " + tries + " tries.");
-      return null;
+    Status status;
+    if (abortCheck.getReason() != null) {
+      status = abortCheck.getReason();
+    } else if (tries >= maximumTries) {
+      status = Status.NO_SOLUTION;
     } else {
-      System.out.println("Success after " + tries + " tries.");
+      status = Status.SOLVED;
+      decisionLog = new DecisionLog(
+          ruleSet,
+          outputSize,
+          Arrays.copyOf(observations, 2 * observationCount)
+      );
     }
-
-    int[][][] array = generateOutput();
-    return array;
+    listener.onComplete(status, tries);
+    return new SolveResult(status, null, tries, finishStats(tries));
   }
 
-  public Vector3<Integer> getInputSize() {
-    return input.size();
+  private SolveStats finishStats(int restarts) {
+    //entropy, entropyNoise and the three arrays of the entropy heap
+    long entropyBytes = 32L * wave.cellCount();
+    long frontBytes = speculativeFrontBuffers.stream().mapToLong(SpeculativeFront::byteSize).sum();
+    return stats.finish(
+        wave,
+        propagator,
+        restarts,
+        ruleSet.getExtractionNanos(),
+        wave.byteSize() + propagator.byteSize() + entropyBytes + frontBytes
+    );
   }
 
-  public List<Pattern3D> getPatterns() {
-    return patterns;
+  /**
+   * Propagate all scheduled changes and record the time it took.
+   */
+  private boolean propagate() {
+    PropagationEvent event = new PropagationEvent();
+    long bans = wave.banCount();
+    long propagatedCells = propagator.propagatedCells();
+    event.begin();
+    long start = System.nanoTime();
+    boolean success = propagator.propagate();
+    stats.addPropagationTime(System.nanoTime() - start);
+    event.end();
+    if (event.shouldCommit()) {
+      event.seed = rngSeed;
+      event.propagatedCells = propagator.propagatedCells() - propagatedCells;
+      event.bans = wave.banCount() - bans;
+      event.collapsedCells = wave.collapsedCount();
+      event.cellCount = wave.cellCount();
+      event.success = success;
+      event.commit();
+    }
+    return success;
   }
 
-  public List<HashMap<Vector3<Integer>, Integer>> getPatternsByPosition() {
-    return patternsByPosition;
+  /**
+   * Reconstruct the output of a solve from its decision log. The observations are applied in order, each followed by
+   * propagation, so no random decisions and no restarts are needed.
+   *
+   * @param log decision log of a solve with the same rule set and output size
+   * @return result with the output model, NO_SOLUTION if the log contradicts the constraints of this model
+   * @throws IllegalArgumentException if the log was recorded with a different rule set or output size
+   */
+  public SolveResult replay(DecisionLog log) {
+    if (!log.matches(ruleSet) || !log.getWaveSize().equals(outputSize)) {
+      throw new IllegalArgumentException("Decision log was recorded for a different rule set or output size");
+    }
+    decisionLog = null;
+    if (!prepareWave()) {
+      return new SolveResult(Status.NO_SOLUTION, null, 0);
+    }
+    for (int i = 0; i < log.size(); i++) {
+      int cell = log.getCell(i);
+      int pattern = log.getPattern(i);
+      if (cell < 0 || cell >= wave.cellCount() || pattern < 0 || pattern >= wave.patternCount()
+          || !wave.get(cell, pattern)) {
+        return new SolveResult(Status.NO_SOLUTION, null, 0);
+      }
+      if (wave.count(cell) > 1 && !observeAndPropagate(cell, pattern)) {
+        return new SolveResult(Status.NO_SOLUTION, null, 0);
+      }
+    }
+    if (wave.collapsedCount() < wave.cellCount()) {
+      return new SolveResult(Status.NO_SOLUTION, null, 0);
+    }
+    decisionLog = log;
+    return new SolveResult(Status.SOLVED, generateOutput(), 0);
   }
 
   /**
-   * Extract and process patterns from input model
+   * @return observations of the last successful solve or replay, null if it failed or there was none
    */
-  private void findPatterns() {
+  public DecisionLog getDecisionLog() {
+    return decisionLog;
+  }
 
-    ArrayList<Grid3D> inputs = new ArrayList<>();
-    inputs.add(input);
-    if (rotation) {
-      for (int i = 0; i < 3; i++) {
-        inputs.add(inputs.get(inputs.size() - 1).getYRotated());
-      }
+  /**
+   * Initialize the wave and propagate its border, which is the state at the start of the main loop. Together with
+   * {@link #observeAndPropagate(int, int)} and {@link #rollbackObservation()} this allows to drive the solver step by
+   * step, e.g. from benchmarks.
+   *
+   * @return false if the border constraints are contradictory
+   */
+  boolean prepareWave() {
+    if (wave == null) {
+      initializeSolverState();
     }
+    abortCheck.reset(new CancellationToken(), -1);
+    ArrayList<Integer> borderCells = resetWave();
+    propagator.reset(borderCells);
+    boolean success = propagator.propagate();
+    wave.clearTrail();
+    propagator.commit();
+    return success;
+  }
 
-    Pattern3D emptyPattern = new Pattern3D(patternSize);
-    this.patterns = new ArrayList<>();
-    //Add empty pattern at pos 0
-    this.patterns.add(emptyPattern);
-    this.patternsByPosition = new ArrayList<>();
-    this.patternFrequency = new ArrayList<>();
-    this.patternFrequency.add(0.000001);
-
-    for (int i = 0; i < inputs.size(); i++) {
-      Grid3D currentInput = inputs.get(i);
-      int boundX = currentInput.size().getX();
-      int boundY = currentInput.size().getY();
-      int boundZ = currentInput.size().getZ();
-      patternsByPosition.add(new HashMap<>());
-      for (int x = 0; x <= boundX; x += patternSize) {
-        for (int y = 0; y <= boundY; y += patternSize) {
-          for (int z = 0; z <= boundZ; z += patternSize) {
-            ArrayList<Pattern3D> tempPatterns = new ArrayList<>();
-            Pattern3D currentPattern = currentInput.getPatternAtPosition(new Vector3(x, y, z), patternSize);
-            if (currentPattern != null) {
-              tempPatterns.add(currentPattern);
-              Vector3<Integer> patternPosition = new Vector3<>(x / patternSize, y / patternSize, z / patternSize);
-              for (Pattern3D pattern : tempPatterns) {
-                if (!this.patterns.contains(pattern)) {
-                  this.patterns.add(pattern);
-                  this.patternsByPosition.get(i).put(patternPosition, patterns.size() - 1);
-                  this.patternFrequency.add(1d);
-                } else {
-                  int patternIndex = this.patterns.indexOf(pattern);
-                  this.patternsByPosition.get(i).put(patternPosition, patternIndex);
-                  Double patternFrequency = this.patternFrequency.get(patternIndex);
-                  this.patternFrequency.set(patternIndex, patternFrequency + 1);
-                }
-              }
-            }
-          }
-        }
-      }
-    }
+  /**
+   * Collapse a cell to the given pattern and propagate the change as a new decision.
+   *
+   * @return true -> success, false -> contradiction
+   */
+  boolean observeAndPropagate(int cell, int pattern) {
+    wave.clearTrail();
+    propagator.commit();
+    propagator.collapse(cell, pattern);
+    return propagator.propagate();
+  }
 
-    //remove all the emplty patterns from padding
-    var x = input.size().getX() / patternSize;
-    var y = input.size().getY() / patternSize;
-    var z = input.size().getZ() / patternSize;
-    int padding = (x * y * z) - ((x - 2) * (y - 1) * (z - 2));
-    if (rotation) {
-      padding *= 4;
-    }
-    double freqWithoutPadding = this.patternFrequency.get(0) - padding;
-    this.patternFrequency.set(
-        0,
-        freqWithoutPadding > 0 ? freqWithoutPadding * (1 - avoidEmptyPattern) /* + 3 TODO magic number remove */ : 0.01
-    );
+  /**
+   * Undo the last {@link #observeAndPropagate(int, int)}.
+   */
+  void rollbackObservation() {
+    propagator.rollback();
+    wave.rollback(this::updateEntropy);
+  }
 
-    int totalPatternCount =
-        (input.size().getX() / patternSize) * (input.size().getY() / patternSize) * (input.size().getZ() / patternSize);
-    if (rotation) {
-      totalPatternCount *= 4;
-    }
-    normalizePatternFrequency(totalPatternCount);
+  /**
+   * Request the running solve to stop. As soon as it notices the request {@link #solve()} returns null and
+   * {@link #solve(CancellationToken, Duration)} returns a result with status CANCELLED. The request only applies to the
+   * solve that is running, the next solve starts uncancelled. Use a {@link CancellationToken} to cancel a solve before
+   * it starts.
+   */
+  public void cancel() {
+    abortCheck.cancel();
+  }
+
+  @Override
+  public void setListener(SolverListener listener) {
+    this.listener = listener != null ? listener : SolverListener.NONE;
+  }
+
+  public long getSeed() {
+    return rngSeed;
   }
 
   /**
-   * Find adjacency constraints
+   * Reseed the random generator, so the model and its buffers can be reused for another solve.
    */
-  private void findNeighbours() {
+  public void setSeed(long rngSeed) {
+    this.rng.setSeed(rngSeed);
+    this.rngSeed = rngSeed;
+  }
 
-    this.patternNeighbours = new HashMap<>();
-    for (int i = 0; i < patterns.size(); i++) {
-      this.patternNeighbours.put(i, new Neighbours());
-    }
-    // Border Pattern
-    this.patternNeighbours.put(-1, new Neighbours());
-
-    patternsByPosition.forEach(currentRotation -> {
-      currentRotation.forEach((position, patternIndex) -> {
-        for (int i = 0; i < 6; i++) {
-          Direction3D dir = Direction3D.values()[i];
-          Vector3<Integer> dirV = Utils.DIRECTIONS.get(i);
-
-          Vector3<Integer> newPos =
-              new Vector3<>(position.getX() + dirV.getX(), position.getY() + dirV.getY(), position.getZ() + dirV.getZ());
-
-          if (currentRotation.containsKey(newPos)) {
-            this.patternNeighbours.get(patternIndex).addNeighbour(dir, currentRotation.get(newPos));
-          } else if (dir == Direction3D.DOWN) {
-            this.patternNeighbours.get(patternIndex).addNeighbour(dir, -1);
-            this.patternNeighbours.get(-1).addNeighbour(Utils.opposite(dir), patternIndex);
-          }
-        }
-      });
-    });
+  /**
+   * Observe several distant low-entropy cells per step and propagate them concurrently. The result is deterministic for
+   * a given seed and number of fronts, but differs from the serial solve.
+   *
+   * @param fronts maximum number of cells observed per step, 1 -> serial solve
+   * @param pool pool the fronts are propagated on
+   */
+  public void setSpeculativeFronts(int fronts, ForkJoinPool pool) {
+    this.speculativeFronts = Math.max(1, fronts);
+    this.speculativePool = pool;
+  }
+
+  public void setSpeculativeFronts(int fronts) {
+    setSpeculativeFronts(fronts, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * @return size of the wave including the padding
+   */
+  Vector3<Integer> getWaveSize() {
+    return outputSize;
+  }
+
+  AdjacencyRules getAdjacencyRules() {
+    return adjacency;
+  }
+
+  /**
+   * @return index of the pattern of a collapsed cell in {@link #getAdjacencyRules()}
+   */
+  int getCellPattern(int cellIndex) {
+    return wave.firstPattern(cellIndex);
+  }
+
+  public CompiledRuleSet getRuleSet() {
+    return ruleSet;
+  }
+
+  public Vector3<Integer> getInputSize() {
+    return ruleSet.getInputSize();
+  }
+
+  public List<Pattern3D> getPatterns() {
+    return patterns;
+  }
+
+  public PatternPositions getPatternsByPosition() {
+    return ruleSet.getPatternsByPosition();
+  }
+
+  /**
+   * Bring the wave back to its initial domains and compute the entropy of every cell. The time it takes is reported as
+   * initialization time.
+   *
+   * @return List of edge and floor cell indices, their constraints still have to be propagated
+   */
+  private ArrayList<Integer> resetWave() {
+    long start = System.nanoTime();
+    ArrayList<Integer> borderCells = initializeWave();
+    computeEntropies();
+    stats.addInitializationTime(System.nanoTime() - start);
+    return borderCells;
   }
 
   /**
    * Initialize the wave by adding possible patterns to each cell and adding a padding of empty (index: 0) and floor(index: -1)
-   * cells around the edges.
+   * cells around the edges. Inside the wave the floor pattern is stored at {@link #floorIndex}.
    *
    * @return List of edge and floor cell indices
    */
   private ArrayList<Integer> initializeWave() {
     ArrayList<Integer> floorCells = new ArrayList<>();
     ArrayList<Integer> paddingCells = new ArrayList<>();
-    wave = new ArrayList<>();
-    for (int x = 0; x < outputSize.getX(); x++) {
-      for (int y = 0; y < outputSize.getY(); y++) {
-        for (int z = 0; z < outputSize.getZ(); z++) {
-          wave.add(new ArrayList<>());
-          List<Integer> waveCell = wave.get(wave.size() - 1);
-          if (y == outputSize.getY() - 1) {
-            waveCell.add(-1);
-            floorCells.add(wave.size() - 1);
-          } else if (x == 0 || x == outputSize.getX() - 1 || y == 0 || z == 0 || z == outputSize.getZ() - 1) {
-            waveCell.add(0);
-            paddingCells.add(wave.size() - 1);
+    int sizeX = outputSize.getX();
+    int sizeY = outputSize.getY();
+    int sizeZ = outputSize.getZ();
+    for (int z = 0; z < sizeZ; z++) {
+      for (int y = 0; y < sizeY; y++) {
+        for (int x = 0; x < sizeX; x++) {
+          int cellIndex = getCellIndexFromPos(x, y, z);
+          entropyNoise[cellIndex] = 2e-10 * rng.nextDouble();
+          int constraint = cellConstraints != null ? cellConstraints[cellIndex] : CELL_DEFAULT;
+          if (constraint >= 0) {
+            wave.fill(cellIndex, constraint, constraint + 1);
+            paddingCells.add(cellIndex);
+          } else if (constraint == CELL_OPEN) {
+            wave.fill(cellIndex, 0, patterns.size());
+          } else if (y == sizeY - 1) {
+            wave.fill(cellIndex, floorIndex, floorIndex + 1);
+            floorCells.add(cellIndex);
+          } else if (x == 0 || x == sizeX - 1 || y == 0 || z == 0 || z == sizeZ - 1) {
+            wave.fill(cellIndex, 0, 1);
+            paddingCells.add(cellIndex);
           } else {
-            for (int i = 0; i < patterns.size(); i++) {
-              waveCell.add(i);
-            }
+            wave.fill(cellIndex, 0, patterns.size());
           }
         }
       }
     }
+    wave.clearTrail();
     floorCells.addAll(paddingCells);
     return floorCells;
   }
 
   /**
-   * Propagate changes through the model until state is consistent with adjacency constraints or a contradiction happens.
+   * Generate output from collapsed wave.
    *
-   * @param cellIndices Cells to propagate
-   * @return true -> success, false -> contradiction
+   * @return 3D-Array of output model
    */
-  private boolean propagate(List<Integer> cellIndices) {
-    Queue<Integer> cellsToPropagate = new LinkedList<>();
-
-    cellsToPropagate.addAll(cellIndices);
-    while (!cellsToPropagate.isEmpty()) {
-      int currentCell = cellsToPropagate.poll();
-
-      Vector3<Integer> cellPosition = getPosFromCellIndex(currentCell);
-
-      for (int i = 0; i < Direction3D.values().length; i++) {
-        Direction3D direction = Direction3D.values()[i];
-        Vector3<Integer> dir = Utils.DIRECTIONS.get(i);
-
-        Vector3<Integer> neighbourPosition = new Vector3<Integer>(
-            cellPosition.getX() + dir.getX(),
-            cellPosition.getY() + dir.getY(),
-            cellPosition.getZ() + dir.getZ()
-        );
-
-        if (neighbourPosition.getX() < 0
-            || neighbourPosition.getX() >= outputSize.getX()
-            || neighbourPosition.getY() < 0
-            || neighbourPosition.getY() >= outputSize.getY()
-            || neighbourPosition.getZ() < 0
-            || neighbourPosition.getZ() >= outputSize.getZ()
-        ) {
-          continue;
-        }
-        List<Integer> neighbourCell = getWaveAt(neighbourPosition.getX(), neighbourPosition.getY(), neighbourPosition.getZ());
-
-        if (neighbourCell.size() == 1 && neighbourCell.get(0) == -1) {
-          continue;
-        }
-
-        HashSet<Integer> possiblePatterns = new HashSet<>();
-        List<Integer> currentPatterns = wave.get(currentCell);
-        for (Integer pattern : currentPatterns) {
-          List<Integer> patterns = neighbourCell.stream()
-              .filter(neighbourPattern -> patternNeighbours.get(pattern).neighbours.get(direction).contains(neighbourPattern))
-              .collect(Collectors.toList());
-          possiblePatterns.addAll(patterns);
-        }
-
-        int neighbourIndex = getCellIndexFromPos(neighbourPosition.getX(), neighbourPosition.getY(), neighbourPosition.getZ());
-        List<Integer> newPatterns = new ArrayList<Integer>(possiblePatterns);
-        if (newPatterns.size() < neighbourCell.size()) {
-          wave.set(neighbourIndex, newPatterns);
-          this.entropy.set(neighbourIndex, getEntropy(neighbourIndex));
-          cellsToPropagate.add(neighbourIndex);
-        }
-
-        if (possiblePatterns.size() == 0) {/* restart algorithm */
-          return false;
-        }
-      }
+  private int[][][] generateOutput() {
+    int[] cellPatterns = new int[wave.cellCount()];
+    for (int cellIndex = 0; cellIndex < cellPatterns.length; cellIndex++) {
+      cellPatterns[cellIndex] = wave.firstPattern(cellIndex);
     }
-    return true;
+    return generateOutput(cellPatterns, outputSize);
   }
 
   /**
-   * Generate output from collapsed wave.
+   * Generate output from the pattern of every cell of a wave.
    *
+   * @param cellPatterns pattern index of {@link #getAdjacencyRules()} for every cell
+   * @param waveSize size of the wave including padding
    * @return 3D-Array of output model
    */
-  private int[][][] generateOutput() {
-    int sizeX = outputSize.getX() * patternSize;
-    int sizeY = (outputSize.getY() - 1) * patternSize;
-    int sizeZ = outputSize.getZ() * patternSize;
+  int[][][] generateOutput(int[] cellPatterns, Vector3<Integer> waveSize) {
+    if (ruleSet.getExtractionMode() == ExtractionMode.OVERLAPPING) {
+      return generateOverlappingOutput(cellPatterns, waveSize);
+    }
+    int sizeX = waveSize.getX() * patternSize;
+    int sizeY = (waveSize.getY() - 1) * patternSize;
+    int sizeZ = waveSize.getZ() * patternSize;
     int[][][] grid = new int[sizeZ][sizeY][sizeX];
-    for (int z = 0; z < outputSize.getZ(); z++) {
-      for (int y = 0; y < outputSize.getY() - 1; y++) {
-        for (int x = 0; x < outputSize.getX(); x++) {
-          Integer patternIndex = getWaveAt(x, y, z).get(0);
+    for (int z = 0; z < waveSize.getZ(); z++) {
+      for (int y = 0; y < waveSize.getY() - 1; y++) {
+        for (int x = 0; x < waveSize.getX(); x++) {
+          int cellIndex = x + y * waveSize.getX() + z * waveSize.getX() * waveSize.getY();
+          int patternIndex = toPatternIndex(cellPatterns[cellIndex]);
           Pattern3D pattern = patternIndex >= 0 ? patterns.get(patternIndex) : new Pattern3D(this.patternSize);
-          if (y >= (outputSize.getY() - 1)) {
-            System.out.println(patternIndex);
-          }
           for (int px = 0; px < patternSize; px++) {
             for (int py = 0; py < patternSize; py++) {
               for (int pz = 0; pz < patternSize; pz++) {
@@ -386,97 +658,207 @@ public class VoxelWfcModel implements IVoxelAlgorithm {
   }
 
   /**
-   * Get entropy value of given cell
-   */
-  private double getEntropy(int cellIndex) {
-    return getEntropy(wave.get(cellIndex));
-  }
-
-  /**
-   * Get entropy value of given cell
+   * Every cell of an overlapping wave contributes the first voxel of its pattern. The lowest row above the floor also
+   * contributes the rest of its patterns' column, so the output reaches down to the ground like the input does.
    */
-  private double getEntropy(Vector3<Integer> cellPosition) {
-    return getEntropy(getWaveAt(cellPosition.getX(), cellPosition.getY(), cellPosition.getZ()));
+  private int[][][] generateOverlappingOutput(int[] cellPatterns, Vector3<Integer> waveSize) {
+    int floorY = waveSize.getY() - 1;
+    int sizeY = floorY + patternSize - 1;
+    int[][][] grid = new int[waveSize.getZ()][sizeY][waveSize.getX()];
+    for (int z = 0; z < waveSize.getZ(); z++) {
+      for (int y = 0; y < sizeY; y++) {
+        int cellY = Math.min(y, floorY - 1);
+        for (int x = 0; x < waveSize.getX(); x++) {
+          int cellIndex = x + cellY * waveSize.getX() + z * waveSize.getX() * waveSize.getY();
+          int patternIndex = toPatternIndex(cellPatterns[cellIndex]);
+          grid[z][y][x] = patternIndex >= 0 ? patterns.get(patternIndex).get(0, y - cellY, 0) : -1;
+        }
+      }
+    }
+    return grid;
   }
 
   /**
-   * Get entropy value of given cell
+   * Get entropy value of given cell. The sums it is based on are maintained by the wave, so this is O(1).
    */
-  private double getEntropy(List<Integer> cell) {
+  private double getEntropy(int cellIndex) {
 
-    if (cell.size() == 1) {
+    if (wave.count(cellIndex) <= 1) {
       return 0;
     }
 
-    double sumOfWeights = cell.stream()
-        .map(index -> patternFrequency.get(index))
-        .reduce(0d, Double::sum, Double::sum);
+    return wave.entropy(cellIndex) + entropyNoise[cellIndex];
+  }
 
-    double logSumOfWeights = cell.stream()
-        .map(index -> patternFrequency.get(index))
-        .reduce(0d, (sum, weight) -> sum + (weight * log2(weight)), Double::sum);
+  private void computeEntropies() {
+    for (int i = 0; i < wave.cellCount(); i++) {
+      entropy[i] = getEntropy(i);
+    }
+    entropyHeap.rebuild(entropy);
+  }
 
-    return log2(sumOfWeights) - (logSumOfWeights / sumOfWeights) + (2e-10 * rng.nextDouble());
+  /**
+   * Called whenever the domain of a cell changes. Collapsed cells stay in the heap and are removed lazily.
+   */
+  private void updateEntropy(int cellIndex) {
+    entropy[cellIndex] = getEntropy(cellIndex);
+    if (entropy[cellIndex] > 0) {
+      entropyHeap.update(cellIndex, entropy[cellIndex]);
+    }
   }
 
-  private int getLowestEntropyCell() {
-    double min = Double.MAX_VALUE;
-    int minIndex = -1;
-    for (int i = 0; i < entropy.size(); i++) {
-      if (entropy.get(i) > 0 && entropy.get(i) < min) {
-        min = entropy.get(i);
-        minIndex = i;
+  int getLowestEntropyCell() {
+    while (!entropyHeap.isEmpty()) {
+      int cell = entropyHeap.peek();
+      if (wave.count(cell) > 1) {
+        return cell;
       }
+      entropyHeap.poll();
     }
-    if (minIndex == -1) {
-      return 0;
-    }
-    return minIndex;
+    return 0;
   }
 
-  private int selectRandomPattern(int cellIndex) {
-    List<Integer> cell = wave.get(cellIndex);
+  /**
+   * Observe several distant cells at once. Their fronts are propagated concurrently on a read-only wave. Afterwards
+   * they are applied in order of entropy, and every front that claimed a cell of an already applied front is discarded
+   * and repeated serially on the updated wave.
+   *
+   * @return true -> success, false -> contradiction
+   */
+  private boolean observeSpeculatively() {
+    List<SpeculativeFront> fronts = new ArrayList<>();
+    for (int cell : selectDistantCells(speculativeFronts)) {
+      if (speculativeFrontBuffers.size() == fronts.size()) {
+        speculativeFrontBuffers.add(new SpeculativeFront(wave, adjacency, cellNeighbours));
+      }
+      SpeculativeFront front = speculativeFrontBuffers.get(fronts.size());
+      front.reset(cell, selectRandomPattern(cell));
+      fronts.add(front);
+    }
+    long start = System.nanoTime();
+    try {
+      for (Future<Boolean> future : speculativePool.invokeAll(fronts)) {
+        future.get();
+      }
+      stats.addPropagationTime(System.nanoTime() - start);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      abortCheck.cancel();
+      abortCheck.check();
+      return false;
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Speculative propagation failed", e.getCause());
+    }
 
-    List<Double> frequencies = cell.stream().map(pattern -> patternFrequency.get(pattern)).collect(Collectors.toList());
-    double total = frequencies.stream().reduce(0d, Double::sum);
+    List<SpeculativeFront> applied = new ArrayList<>();
+    List<SpeculativeFront> conflicting = new ArrayList<>();
+    for (SpeculativeFront front : fronts) {
+      if (!front.isConsistent()) {
+        //the cell is observed again in a later step
+        continue;
+      }
+      if (applied.stream().anyMatch(front::overlaps)) {
+        conflicting.add(front);
+        continue;
+      }
+      applied.add(front);
+      stats.observation();
+      listener.onObservation(front.getCell(), front.getPattern());
+      recordObservation(front.getCell(), front.getPattern());
+      front.apply(propagator);
+    }
+    if (applied.isEmpty() || !propagate()) {
+      return false;
+    }
 
-    double rand = rng.nextDouble() * total;
-    double acc = 0;
-    for (int i = 0; i < cell.size() - 1; i++) {
-      int pattern = cell.get(i);
-      acc += frequencies.get(i);
-      if (acc >= rand && rand <= (acc + frequencies.get(i + 1))) {
-        return pattern;
+    for (SpeculativeFront front : conflicting) {
+      int cell = front.getCell();
+      if (wave.count(cell) > 1 && wave.get(cell, front.getPattern())) {
+        observe(cell, front.getPattern());
+        if (!propagate()) {
+          return false;
+        }
       }
     }
-    return cell.get(cell.size() - 1);
+    return true;
   }
 
-  //Utility methods
+  private void observe(int cell, int pattern) {
+    stats.observation();
+    listener.onObservation(cell, pattern);
+    propagator.collapse(cell, pattern);
+    recordObservation(cell, pattern);
+  }
 
-  private void normalizePatternFrequency(int totalPatternCount) {
-    for (int i = 0; i < patternFrequency.size(); i++) {
-      double repetitions = patternFrequency.get(i);
-      patternFrequency.set(i, repetitions / totalPatternCount);
+  /**
+   * Append an applied observation to the decision log of the current try.
+   */
+  private void recordObservation(int cell, int pattern) {
+    if (2 * observationCount == observations.length) {
+      observations = Arrays.copyOf(observations, observations.length * 2);
     }
+    observations[2 * observationCount] = cell;
+    observations[2 * observationCount + 1] = pattern;
+    observationCount++;
   }
 
-  private double log2(double value) {
-    return Math.log(value) / Math.log(2);
+  /**
+   * Take the cells with the lowest entropy that are at least {@link #SPECULATIVE_DISTANCE} apart from each other.
+   */
+  private List<Integer> selectDistantCells(int maxCells) {
+    List<Integer> selected = new ArrayList<>();
+    List<Integer> examined = new ArrayList<>();
+    while (selected.size() < maxCells && examined.size() < maxCells * 8 && !entropyHeap.isEmpty()) {
+      int cell = entropyHeap.poll();
+      if (wave.count(cell) <= 1) {
+        continue;
+      }
+      examined.add(cell);
+      if (selected.stream().allMatch(other -> isDistant(cell, other))) {
+        selected.add(cell);
+      }
+    }
+    for (int cell : examined) {
+      entropyHeap.update(cell, entropy[cell]);
+    }
+    if (selected.isEmpty()) {
+      selected.add(getLowestEntropyCell());
+    }
+    return selected;
   }
 
-  private int getCellIndexFromPos(int x, int y, int z) {
-    return x + y * outputSize.getX() + z * outputSize.getX() * outputSize.getY();
+  private boolean isDistant(int cell, int other) {
+    int sizeX = outputSize.getX();
+    int sizeXY = sizeX * outputSize.getY();
+    return Math.abs(cell % sizeX - other % sizeX) >= SPECULATIVE_DISTANCE
+        || Math.abs((cell / sizeX) % outputSize.getY() - (other / sizeX) % outputSize.getY()) >= SPECULATIVE_DISTANCE
+        || Math.abs(cell / sizeXY - other / sizeXY) >= SPECULATIVE_DISTANCE;
+  }
+
+  /**
+   * Select a possible pattern of the cell with a probability proportional to its weight. Cells that still allow every
+   * pattern are sampled from the alias table of the rule set in O(1), reduced domains by summing the weights of their
+   * possible patterns.
+   */
+  int selectRandomPattern(int cellIndex) {
+    double random = rng.nextDouble();
+    AliasTable aliasTable = ruleSet.getAliasTable();
+    if (wave.count(cellIndex) == aliasTable.size()) {
+      return aliasTable.sample(random);
+    }
+    return wave.patternAtWeight(cellIndex, random * wave.sumOfWeights(cellIndex));
   }
 
-  private List<Integer> getWaveAt(int x, int y, int z) {
-    return wave.get(getCellIndexFromPos(x, y, z));
+  //Utility methods
+
+  private int getCellIndexFromPos(int x, int y, int z) {
+    return x + y * outputSize.getX() + z * outputSize.getX() * outputSize.getY();
   }
 
-  private Vector3<Integer> getPosFromCellIndex(int index) {
-    int x = index % outputSize.getX();
-    int y = (index / outputSize.getX()) % outputSize.getY();
-    int z = index / (outputSize.getX() * outputSize.getY());
-    return new Vector3<>(x, y, z);
+  /**
+   * Map a dense pattern index to the index in {@link #patterns} (-1 for the floor).
+   */
+  private int toPatternIndex(int waveIndex) {
+    return waveIndex == floorIndex ? -1 : waveIndex;
   }
 }
@@ -0,0 +1,318 @@
+package org.example.model;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Primitive representation of the wave. The domain of every cell is stored as a packed bitset of pattern indices
+ * together with the number of patterns that are still possible in that cell. The sums needed for the entropy of a cell
+ * and the number of collapsed cells are updated incrementally whenever a domain changes.
+ * <p>
+ * Every removal of a pattern is recorded in a trail, so all changes since the last call of {@link #clearTrail()} can be
+ * undone with {@link #rollback(IntConsumer)}.
+ */
+class Wave {
+
+  private final int cellCount;
+  private final int patternCount;
+  private final int wordsPerCell;
+  private final long[] data;
+  private final int[] count;
+  private int collapsedCount;
+
+  private final double[] weights;
+  private final double[] weightLogWeights;
+  private final double[] sumOfWeights;
+  private final double[] sumOfWeightLogWeights;
+
+  /**
+   * Removed patterns stored as (cell, pattern) pairs.
+   */
+  private int[] trail = new int[64];
+  private int trailSize = 0;
+  private long banCount = 0;
+
+  /**
+   * @param cellCount number of cells
+   * @param weights weight of every pattern, its length is the number of patterns
+   */
+  Wave(int cellCount, double[] weights) {
+    this.cellCount = cellCount;
+    this.patternCount = weights.length;
+    this.wordsPerCell = (patternCount + 63) >>> 6;
+    this.data = new long[cellCount * wordsPerCell];
+    this.count = new int[cellCount];
+    this.weights = weights;
+    this.weightLogWeights = new double[patternCount];
+    for (int i = 0; i < patternCount; i++) {
+      //0 * log(0) is 0, a pattern with zero weight must not turn the sums of every cell into NaN
+      weightLogWeights[i] = weights[i] > 0 ? weights[i] * log2(weights[i]) : 0;
+    }
+    this.sumOfWeights = new double[cellCount];
+    this.sumOfWeightLogWeights = new double[cellCount];
+  }
+
+  int cellCount() {
+    return cellCount;
+  }
+
+  int patternCount() {
+    return patternCount;
+  }
+
+  int wordsPerCell() {
+    return wordsPerCell;
+  }
+
+  /**
+   * Number of patterns still possible in the given cell.
+   */
+  int count(int cell) {
+    return count[cell];
+  }
+
+  /**
+   * Number of cells with exactly one possible pattern.
+   */
+  int collapsedCount() {
+    return collapsedCount;
+  }
+
+  double weight(int pattern) {
+    return weights[pattern];
+  }
+
+  double sumOfWeights(int cell) {
+    return sumOfWeights[cell];
+  }
+
+  /**
+   * Shannon entropy of the weights of all possible patterns in the given cell.
+   */
+  double entropy(int cell) {
+    double sum = sumOfWeights[cell];
+    return log2(sum) - (sumOfWeightLogWeights[cell] / sum);
+  }
+
+  boolean get(int cell, int pattern) {
+    return (data[cell * wordsPerCell + (pattern >>> 6)] & (1L << pattern)) != 0;
+  }
+
+  /**
+   * Remove a pattern from the domain of a cell.
+   *
+   * @return true if the pattern was possible before
+   */
+  boolean ban(int cell, int pattern) {
+    int word = cell * wordsPerCell + (pattern >>> 6);
+    long mask = 1L << pattern;
+    if ((data[word] & mask) == 0) {
+      return false;
+    }
+    data[word] &= ~mask;
+    setCount(cell, count[cell] - 1);
+    sumOfWeights[cell] -= weights[pattern];
+    sumOfWeightLogWeights[cell] -= weightLogWeights[pattern];
+    record(cell, pattern);
+    return true;
+  }
+
+  /**
+   * Add a pattern to the domain of a cell. Additions are not recorded in the trail.
+   *
+   * @return true if the pattern was not possible before
+   */
+  boolean add(int cell, int pattern) {
+    int word = cell * wordsPerCell + (pattern >>> 6);
+    long mask = 1L << pattern;
+    if ((data[word] & mask) != 0) {
+      return false;
+    }
+    data[word] |= mask;
+    setCount(cell, count[cell] + 1);
+    sumOfWeights[cell] += weights[pattern];
+    sumOfWeightLogWeights[cell] += weightLogWeights[pattern];
+    return true;
+  }
+
+  /**
+   * Reduce the domain of a cell to a single pattern.
+   */
+  void collapse(int cell, int pattern) {
+    for (int p = firstPattern(cell); p >= 0; p = nextPattern(cell, p + 1)) {
+      if (p != pattern) {
+        ban(cell, p);
+      }
+    }
+  }
+
+  /**
+   * Remove all patterns from a cell without recording them in the trail.
+   */
+  void clear(int cell) {
+    int offset = cell * wordsPerCell;
+    Arrays.fill(data, offset, offset + wordsPerCell, 0L);
+    setCount(cell, 0);
+    sumOfWeights[cell] = 0;
+    sumOfWeightLogWeights[cell] = 0;
+  }
+
+  /**
+   * Allow exactly the patterns in [fromPattern, toPattern) in the given cell. This is not recorded in the trail.
+   */
+  void fill(int cell, int fromPattern, int toPattern) {
+    clear(cell);
+    for (int pattern = fromPattern; pattern < toPattern; pattern++) {
+      add(cell, pattern);
+    }
+  }
+
+  /**
+   * Intersect the domain of a cell with the given bitset.
+   *
+   * @param mask bitset of {@link #wordsPerCell()} words
+   * @return the new number of possible patterns
+   */
+  int retain(int cell, long[] mask) {
+    int offset = cell * wordsPerCell;
+    int newCount = 0;
+    for (int w = 0; w < wordsPerCell; w++) {
+      long removed = data[offset + w] & ~mask[w];
+      while (removed != 0) {
+        int pattern = (w << 6) + Long.numberOfTrailingZeros(removed);
+        sumOfWeights[cell] -= weights[pattern];
+        sumOfWeightLogWeights[cell] -= weightLogWeights[pattern];
+        record(cell, pattern);
+        removed &= removed - 1;
+      }
+      data[offset + w] &= mask[w];
+      newCount += Long.bitCount(data[offset + w]);
+    }
+    setCount(cell, newCount);
+    return newCount;
+  }
+
+  /**
+   * Copy the bitset of possible patterns of a cell into the given array of {@link #wordsPerCell()} words.
+   */
+  void copyDomain(int cell, long[] target) {
+    System.arraycopy(data, cell * wordsPerCell, target, 0, wordsPerCell);
+  }
+
+  /**
+   * @return the smallest possible pattern >= fromPattern in the given cell or -1 if there is none
+   */
+  int nextPattern(int cell, int fromPattern) {
+    if (fromPattern >= patternCount) {
+      return -1;
+    }
+    int offset = cell * wordsPerCell;
+    int w = fromPattern >>> 6;
+    long word = data[offset + w] & (-1L << fromPattern);
+    while (true) {
+      if (word != 0) {
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+      }
+      if (++w == wordsPerCell) {
+        return -1;
+      }
+      word = data[offset + w];
+    }
+  }
+
+  int firstPattern(int cell) {
+    return nextPattern(cell, 0);
+  }
+
+  /**
+   * Walk the possible patterns of a cell in index order and sum up their weights.
+   *
+   * @param target value in [0, {@link #sumOfWeights(int)})
+   * @return first pattern at which the sum reaches the target, the last possible pattern if rounding errors keep the
+   * sum below it or -1 if no pattern is possible
+   */
+  int patternAtWeight(int cell, double target) {
+    int offset = cell * wordsPerCell;
+    double sum = 0;
+    int last = -1;
+    for (int w = 0; w < wordsPerCell; w++) {
+      for (long word = data[offset + w]; word != 0; word &= word - 1) {
+        int pattern = (w << 6) + Long.numberOfTrailingZeros(word);
+        sum += weights[pattern];
+        if (sum >= target) {
+          return pattern;
+        }
+        last = pattern;
+      }
+    }
+    return last;
+  }
+
+  /**
+   * Mark a new decision point, changes before it can no longer be rolled back.
+   */
+  void clearTrail() {
+    trailSize = 0;
+  }
+
+  /**
+   * Number of removals recorded since the last decision point.
+   */
+  int trailLength() {
+    return trailSize >>> 1;
+  }
+
+  /**
+   * Total number of patterns removed since the wave was created, including removals that were rolled back.
+   */
+  long banCount() {
+    return banCount;
+  }
+
+  /**
+   * Memory held by the arrays of the wave.
+   */
+  long byteSize() {
+    return 8L * data.length
+        + 4L * count.length
+        + 8L * (weightLogWeights.length + sumOfWeights.length + sumOfWeightLogWeights.length)
+        + 4L * trail.length;
+  }
+
+  /**
+   * Restore all patterns removed since the last decision point, in reverse order of their removal.
+   *
+   * @param restoredCellListener called with the cell index after each restored pattern
+   */
+  void rollback(IntConsumer restoredCellListener) {
+    while (trailSize > 0) {
+      trailSize -= 2;
+      int cell = trail[trailSize];
+      add(cell, trail[trailSize + 1]);
+      restoredCellListener.accept(cell);
+    }
+  }
+
+  private void record(int cell, int pattern) {
+    if (trailSize == trail.length) {
+      trail = Arrays.copyOf(trail, trail.length * 2);
+    }
+    trail[trailSize++] = cell;
+    trail[trailSize++] = pattern;
+    banCount++;
+  }
+
+  private void setCount(int cell, int newCount) {
+    if (count[cell] == 1) {
+      collapsedCount--;
+    }
+    if (newCount == 1) {
+      collapsedCount++;
+    }
+    count[cell] = newCount;
+  }
+
+  private static double log2(double value) {
+    return Math.log(value) / Math.log(2);
+  }
+}
@@ -0,0 +1,24 @@
+package org.example.shared;
+
+/**
+ * Lets another thread request a running solve to stop. The solve checks the token cooperatively and returns a
+ * {@link SolveResult} with status {@link SolveResult.Status#CANCELLED}.
+ */
+public class CancellationToken {
+
+  private volatile boolean cancelled = false;
+
+  /**
+   * Create a token that is not cancelled. Pass it to a solve and keep it to cancel that solve later.
+   */
+  public CancellationToken() {
+  }
+
+  public void cancel() {
+    this.cancelled = true;
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+}
@@ -1,8 +1,9 @@
 package org.example.shared;
 
-import java.util.HashMap;
+import java.time.Duration;
 import java.util.List;
 import org.example.model.Pattern3D;
+import org.example.model.PatternPositions;
 
 /**
  * Exposes the functionality of the VoxelWfcModel class.
@@ -11,9 +12,22 @@ public interface IVoxelAlgorithm {
 
   int[][][] solve();
 
+  /**
+   * Solve with cooperative cancellation and an optional deadline.
+   *
+   * @param token token to cancel the solve from another thread
+   * @param timeout time budget of the solve, null -> no deadline
+   */
+  SolveResult solve(CancellationToken token, Duration timeout);
+
+  /**
+   * Set the listener that receives the progress events of {@link #solve()}.
+   */
+  void setListener(SolverListener listener);
+
   Vector3<Integer> getInputSize();
 
   List<Pattern3D> getPatterns();
 
-  List<HashMap<Vector3<Integer>, Integer>> getPatternsByPosition();
+  PatternPositions getPatternsByPosition();
 }
@@ -0,0 +1,78 @@
+package org.example.shared;
+
+/**
+ * Outcome of a solve. Distinguishes a solve that found no solution from one that was aborted.
+ */
+public final class SolveResult {
+
+  public enum Status {
+    /**
+     * Every cell was collapsed.
+     */
+    SOLVED,
+    /**
+     * All tries ended in a contradiction.
+     */
+    NO_SOLUTION,
+    /**
+     * The solve was cancelled through its {@link CancellationToken}.
+     */
+    CANCELLED,
+    /**
+     * The deadline passed before a solution was found.
+     */
+    TIMED_OUT
+  }
+
+  private final Status status;
+  private final int[][][] output;
+  private final int tries;
+  private final SolveStats stats;
+
+  public SolveResult(Status status, int[][][] output, int tries) {
+    this(status, output, tries, null);
+  }
+
+  public SolveResult(Status status, int[][][] output, int tries, SolveStats stats) {
+    this.status = status;
+    this.output = output;
+    this.tries = tries;
+    this.stats = stats;
+  }
+
+  public Status getStatus() {
+    return status;
+  }
+
+  /**
+   * @return 3D-Array of the output model or null if the solve was not successful
+   */
+  public int[][][] getOutput() {
+    return output;
+  }
+
+  /**
+   * @return number of restarts that were needed
+   */
+  public int getTries() {
+    return tries;
+  }
+
+  /**
+   * @return timings and counters of the solve or null if they were not recorded
+   */
+  public SolveStats getStats() {
+    return stats;
+  }
+
+  public boolean isSolved() {
+    return status == Status.SOLVED;
+  }
+
+  /**
+   * @return true if the solve was cancelled or timed out
+   */
+  public boolean isAborted() {
+    return status == Status.CANCELLED || status == Status.TIMED_OUT;
+  }
+}
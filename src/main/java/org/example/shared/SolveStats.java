@@ -0,0 +1,158 @@
+package org.example.shared;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Phase timings and counters of a single solve. Times are in nanoseconds. Byte counts are -1 if the JVM cannot measure
+ * them.
+ */
+public final class SolveStats {
+
+  private final long extractionNanos;
+  private final long solveNanos;
+  private final long initializationNanos;
+  private final long propagationNanos;
+  private final long observations;
+  private final long propagatedCells;
+  private final long bans;
+  private final int contradictions;
+  private final int rollbacks;
+  private final int restarts;
+  private final long peakWaveBytes;
+  private final long allocatedBytes;
+
+  public SolveStats(
+      long extractionNanos,
+      long solveNanos,
+      long initializationNanos,
+      long propagationNanos,
+      long observations,
+      long propagatedCells,
+      long bans,
+      int contradictions,
+      int rollbacks,
+      int restarts,
+      long peakWaveBytes,
+      long allocatedBytes
+  ) {
+    this.extractionNanos = extractionNanos;
+    this.solveNanos = solveNanos;
+    this.initializationNanos = initializationNanos;
+    this.propagationNanos = propagationNanos;
+    this.observations = observations;
+    this.propagatedCells = propagatedCells;
+    this.bans = bans;
+    this.contradictions = contradictions;
+    this.rollbacks = rollbacks;
+    this.restarts = restarts;
+    this.peakWaveBytes = peakWaveBytes;
+    this.allocatedBytes = allocatedBytes;
+  }
+
+  /**
+   * @return time it took to extract the patterns of the input or to load them from a rule set file
+   */
+  public long getExtractionNanos() {
+    return extractionNanos;
+  }
+
+  /**
+   * @return wall time of the solve, without extraction. Besides initialization and propagation it contains the
+   * selection of cells and patterns, rollbacks and the bookkeeping of the main loop.
+   */
+  public long getSolveNanos() {
+    return solveNanos;
+  }
+
+  /**
+   * @return part of the solve time spent resetting the wave and the entropy of every cell, at the start and after every
+   * restart
+   */
+  public long getInitializationNanos() {
+    return initializationNanos;
+  }
+
+  /**
+   * @return part of the solve time spent propagating, including the border constraints and the initial support counts
+   */
+  public long getPropagationNanos() {
+    return propagationNanos;
+  }
+
+  /**
+   * @return number of cells collapsed by a random decision, including decisions that were rolled back
+   */
+  public long getObservations() {
+    return observations;
+  }
+
+  /**
+   * @return number of cells whose changed domain was propagated to their neighbours
+   */
+  public long getPropagatedCells() {
+    return propagatedCells;
+  }
+
+  /**
+   * @return number of patterns removed from the domain of a cell
+   */
+  public long getBans() {
+    return bans;
+  }
+
+  public int getContradictions() {
+    return contradictions;
+  }
+
+  /**
+   * @return number of decisions that were undone after a contradiction
+   */
+  public int getRollbacks() {
+    return rollbacks;
+  }
+
+  public int getRestarts() {
+    return restarts;
+  }
+
+  /**
+   * @return memory held by the wave, the propagator, the speculative fronts and the entropy bookkeeping at the end of
+   * the solve. These buffers only grow, so this is their peak size.
+   */
+  public long getPeakWaveBytes() {
+    return peakWaveBytes;
+  }
+
+  /**
+   * @return bytes allocated by the solving thread
+   */
+  public long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  public JsonObject toJsonObject() {
+    JsonObject json = new JsonObject();
+    json.addProperty("extractionNanos", extractionNanos);
+    json.addProperty("solveNanos", solveNanos);
+    json.addProperty("initializationNanos", initializationNanos);
+    json.addProperty("propagationNanos", propagationNanos);
+    json.addProperty("observations", observations);
+    json.addProperty("propagatedCells", propagatedCells);
+    json.addProperty("bans", bans);
+    json.addProperty("contradictions", contradictions);
+    json.addProperty("rollbacks", rollbacks);
+    json.addProperty("restarts", restarts);
+    json.addProperty("peakWaveBytes", peakWaveBytes);
+    json.addProperty("allocatedBytes", allocatedBytes);
+    return json;
+  }
+
+  public String toJson() {
+    return toJsonObject().toString();
+  }
+
+  @Override
+  public String toString() {
+    return toJson();
+  }
+}
@@ -0,0 +1,63 @@
+package org.example.shared;
+
+/**
+ * Receives progress events of a running solve. All methods are called on the solving thread and default to doing
+ * nothing, so implementations only override the events they are interested in.
+ */
+public interface SolverListener {
+
+  /**
+   * Listener that ignores all events.
+   */
+  SolverListener NONE = new SolverListener() {
+  };
+
+  /**
+   * A cell was collapsed to a randomly selected pattern.
+   *
+   * @param cell index of the cell in the wave
+   * @param pattern index of the selected pattern
+   */
+  default void onObservation(int cell, int pattern) {
+  }
+
+  /**
+   * A batch of changes was propagated successfully.
+   *
+   * @param collapsedCells number of cells with a single possible pattern
+   * @param cellCount number of cells in the wave
+   */
+  default void onPropagation(int collapsedCells, int cellCount) {
+  }
+
+  /**
+   * Propagation led to a cell without any possible pattern.
+   */
+  default void onContradiction() {
+  }
+
+  /**
+   * The wave was rolled back to the last decision point after a contradiction.
+   *
+   * @param restoredPatterns number of patterns that were possible again
+   */
+  default void onRollback(int restoredPatterns) {
+  }
+
+  /**
+   * The wave was reset after too many contradictions.
+   *
+   * @param tries number of restarts so far
+   */
+  default void onRestart(int tries) {
+  }
+
+  /**
+   * The solve ended.
+   *
+   * @param status whether the solve succeeded, failed or was aborted
+   * @param tries number of restarts that were needed
+   */
+  default void onComplete(SolveResult.Status status, int tries) {
+  }
+}
@@ -0,0 +1,62 @@
+package org.example.shared;
+
+/**
+ * Forwards the frequent observation and propagation events to another listener at most once per interval.
+ * Contradictions, rollbacks, restarts and completion are always forwarded.
+ */
+public class ThrottledSolverListener implements SolverListener {
+
+  private final SolverListener delegate;
+  private final long intervalNanos;
+  private long lastObservation;
+  private long lastPropagation;
+
+  /**
+   * @param delegate listener to forward the events to
+   * @param intervalMillis minimum time between two forwarded observation or propagation events
+   */
+  public ThrottledSolverListener(SolverListener delegate, long intervalMillis) {
+    this.delegate = delegate;
+    this.intervalNanos = intervalMillis * 1_000_000;
+    this.lastObservation = System.nanoTime() - intervalNanos;
+    this.lastPropagation = lastObservation;
+  }
+
+  @Override
+  public void onObservation(int cell, int pattern) {
+    long now = System.nanoTime();
+    if (now - lastObservation >= intervalNanos) {
+      lastObservation = now;
+      delegate.onObservation(cell, pattern);
+    }
+  }
+
+  @Override
+  public void onPropagation(int collapsedCells, int cellCount) {
+    long now = System.nanoTime();
+    if (now - lastPropagation >= intervalNanos) {
+      lastPropagation = now;
+      delegate.onPropagation(collapsedCells, cellCount);
+    }
+  }
+
+  @Override
+  public void onContradiction() {
+    delegate.onContradiction();
+  }
+
+  @Override
+  public void onRollback(int restoredPatterns) {
+    delegate.onRollback(restoredPatterns);
+  }
+
+  @Override
+  public void onRestart(int tries) {
+    delegate.onRestart(tries);
+  }
+
+  @Override
+  public void onComplete(SolveResult.Status status, int tries) {
+    delegate.onComplete(status, tries);
+  }
+}
@@ -1,5 +1,8 @@
 package org.example.shared;
 
+import org.example.model.ExtractionMode;
+import org.example.model.Symmetry;
+
 /**
  * Parameters of the Voxel-WFC for serialization.
  */
@@ -10,7 +13,12 @@ public class VoxelWFCParameters {
   public int outputSizeY;
   public int outputSizeZ;
   public boolean rotation;
+  public boolean reflection;
   public double avoidEmptyPattern;
+  /**
+   * Null in parameter files written before the mode existed, see {@link #getExtractionMode()}.
+   */
+  public ExtractionMode extractionMode;
 
   public VoxelWFCParameters(
       int patternSize,
@@ -27,4 +35,12 @@ public class VoxelWFCParameters {
     this.rotation = rotation;
     this.avoidEmptyPattern = avoidEmptyPattern;
   }
+
+  public Symmetry getSymmetry() {
+    return Symmetry.of(rotation, reflection);
+  }
+
+  public ExtractionMode getExtractionMode() {
+    return extractionMode != null ? extractionMode : ExtractionMode.TILED;
+  }
 }
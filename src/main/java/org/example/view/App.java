@@ -51,8 +51,16 @@ import javafx.scene.paint.Color;
 import javafx.scene.text.Text;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import org.example.model.CompiledRuleSet;
+import org.example.model.ExtractionMode;
+import org.example.model.RuleSetFile;
+import org.example.model.Symmetry;
 import org.example.model.VoxelWfcModel;
+import org.example.shared.CancellationToken;
 import org.example.shared.IVoxelAlgorithm;
+import org.example.shared.SolveResult;
+import org.example.shared.SolverListener;
+import org.example.shared.ThrottledSolverListener;
 import org.example.shared.Vector3;
 import org.example.shared.VoxelWFCParameters;
 
@@ -76,6 +84,9 @@ public class App extends Application {
   //WFC Parameters
   int[][][] inputArray;
   private BooleanProperty rotation = new SimpleBooleanProperty(true);
+  //only set from the params file, there are no controls for them
+  private BooleanProperty reflection = new SimpleBooleanProperty(false);
+  private ObjectProperty<ExtractionMode> extractionMode = new SimpleObjectProperty<>(ExtractionMode.TILED);
   private DoubleProperty avoidEmptyPattern = new SimpleDoubleProperty(0);
   private IntegerProperty patternSize = new SimpleIntegerProperty(2);
   private ObjectProperty<Vector3<Integer>> outputSize = new SimpleObjectProperty<>(new Vector3<>(15, 8, 15));
@@ -84,6 +95,7 @@ public class App extends Application {
 
   //Current generated Model
   int[][][] currentSolution = null;
+  private CancellationToken currentGeneration = null;
 
   //Entry Point of Application
   @Override
@@ -137,19 +149,42 @@ public class App extends Application {
     if (!this.useSeed.get()) {
       this.rngSeed.set((long) (Math.random() * 10000));
     }
-    IVoxelAlgorithm voxelWfcModel = new VoxelWfcModel(
-        inputArray,
-        patternSize.get(),
-        outputSize.get(),
-        rotation.get(),
-        avoidEmptyPattern.get(),
-        this.rngSeed.get()
-    );
+    IVoxelAlgorithm voxelWfcModel = new VoxelWfcModel(loadRuleSet(), outputSize.get(), this.rngSeed.get());
+    //A new generation replaces a running one
+    if (currentGeneration != null) {
+      currentGeneration.cancel();
+    }
+    CancellationToken generation = new CancellationToken();
+    currentGeneration = generation;
+    voxelWfcModel.setListener(new ThrottledSolverListener(new SolverListener() {
+      @Override
+      public void onPropagation(int collapsedCells, int cellCount) {
+        if (!generation.isCancelled()) {
+          Platform.runLater(() -> progressIndicator.setProgress((double) collapsedCells / cellCount));
+        }
+      }
+
+      @Override
+      public void onRestart(int tries) {
+        if (!generation.isCancelled()) {
+          Platform.runLater(() -> progressIndicator.setProgress(-1.0));
+        }
+      }
+    }, 100));
+    progressIndicator.setProgress(-1.0);
     progressIndicator.setVisible(true);
     voxelModelViewer.clear();
     Thread solveThread = new Thread(() -> {
-      currentSolution = voxelWfcModel.solve();
+      SolveResult result = voxelWfcModel.solve(generation, null);
+      if (result.isAborted()) {
+        return;
+      }
       Platform.runLater(() -> {
+        //a newer generation may have started after this solve returned
+        if (generation.isCancelled()) {
+          return;
+        }
+        currentSolution = result.getOutput();
         if (currentSolution != null) {
           voxelModelViewer.setModel(currentSolution);
           saveParametersForModelToJSON();
@@ -159,19 +194,27 @@ public class App extends Application {
         progressIndicator.setVisible(false);
       });
     });
+    solveThread.setDaemon(true);
     solveThread.start();
   }
 
   private void showPatterns() {
-    IVoxelAlgorithm voxelWfcModel = new VoxelWfcModel(
-        inputArray,
+    IVoxelAlgorithm voxelWfcModel = new VoxelWfcModel(loadRuleSet(), outputSize.get(), rngSeed.get());
+    voxelModelViewer.showPatterns(voxelWfcModel, patternSize.get());
+  }
+
+  /**
+   * Load the compiled patterns of the current input model from its rule set file or compile them.
+   */
+  private CompiledRuleSet loadRuleSet() {
+    return RuleSetFile.loadOrCompile(
+        Paths.get(INPUT_MODELS_PATH, modelComboBox.getValue()),
         patternSize.get(),
-        outputSize.get(),
-        rotation.get(),
+        extractionMode.get(),
+        Symmetry.of(rotation.get(), reflection.get()),
         avoidEmptyPattern.get(),
-        rngSeed.get()
+        inputArray
     );
-    voxelModelViewer.showPatterns(voxelWfcModel, patternSize.get());
   }
 
   private void loadVoxModel(String filename) {
@@ -201,10 +244,16 @@ public class App extends Application {
             voxelWFCParameters.outputSizeZ
         ));
         this.rotation.setValue(voxelWFCParameters.rotation);
+        this.reflection.setValue(voxelWFCParameters.reflection);
+        this.extractionMode.setValue(voxelWFCParameters.getExtractionMode());
         this.avoidEmptyPattern.setValue(voxelWFCParameters.avoidEmptyPattern);
       } catch (FileNotFoundException e) {
         e.printStackTrace();
       }
+    } else {
+      //without controls these would silently carry over from the previous model
+      this.reflection.setValue(false);
+      this.extractionMode.setValue(ExtractionMode.TILED);
     }
   }
 
@@ -458,6 +507,8 @@ public class App extends Application {
         rotation.get(),
         avoidEmptyPattern.get()
     );
+    voxelWFCParameters.reflection = reflection.get();
+    voxelWFCParameters.extractionMode = extractionMode.get();
     Gson gson = new GsonBuilder()
         .setPrettyPrinting()
         .create();
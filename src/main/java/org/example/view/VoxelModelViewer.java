@@ -99,13 +99,13 @@ public class VoxelModelViewer {
 
   public void showPatterns(IVoxelAlgorithm voxelWfcModel, int patternSize) {
     boxes.getChildren().clear();
-    voxelWfcModel.getPatternsByPosition().get(0).forEach((pos, i) -> boxes.getChildren()
+    voxelWfcModel.getPatternsByPosition().forEach((x, y, z, i) -> boxes.getChildren()
         .addAll(createBoxesFromVoxelArray(
             voxelWfcModel.getPatterns().get(i).getRawArray(),
             new Vector3<>(
-                (pos.getX() * 2) * patternSize - (voxelWfcModel.getInputSize().getX() * 2 / (patternSize)),
-                (pos.getY() * 2) * patternSize - (voxelWfcModel.getInputSize().getY() * 2 / (patternSize)),
-                (pos.getZ() * 2) * patternSize - (voxelWfcModel.getInputSize().getZ() * 2 / (patternSize))
+                (x * 2) * patternSize - (voxelWfcModel.getInputSize().getX() * 2 / (patternSize)),
+                (y * 2) * patternSize - (voxelWfcModel.getInputSize().getY() * 2 / (patternSize)),
+                (z * 2) * patternSize - (voxelWfcModel.getInputSize().getZ() * 2 / (patternSize))
             ),
             false
             )
@@ -0,0 +1,26 @@
+package org.example.voxparser;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of reading a .vox file with {@link VoxReader}. Disabled by default.
+ */
+@Name("org.example.VoxRead")
+@Label("Vox Read")
+@Category({"WFC", "I/O"})
+@Enabled(false)
+class VoxReadEvent extends Event {
+
+  @Label("File Version")
+  int fileVersion;
+
+  @Label("Model Count")
+  int modelCount;
+
+  @Label("Voxel Count")
+  long voxelCount;
+}
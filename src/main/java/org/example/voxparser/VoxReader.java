@@ -22,6 +22,8 @@ public class VoxReader implements Closeable {
     }
 
     public VoxFile read() throws IOException {
+        VoxReadEvent event = new VoxReadEvent();
+        event.begin();
         byte[] magicBytes = new byte[4];
         if (stream.read(magicBytes) != 4) {
             throw new InvalidVoxException("Could not read magic bytes");
@@ -47,7 +49,17 @@ public class VoxReader implements Closeable {
             throw new InvalidVoxException("First chunk is not of ID \"MAIN\"");
         }
 
-        return new VoxFile(fileVersion, (VoxRootChunk)chunk);
+        VoxFile voxFile = new VoxFile(fileVersion, (VoxRootChunk)chunk);
+        event.end();
+        if (event.shouldCommit()) {
+            event.fileVersion = fileVersion;
+            event.modelCount = voxFile.getModels().length;
+            for (VoxModel model : voxFile.getModels()) {
+                event.voxelCount += model.getVoxels().length;
+            }
+            event.commit();
+        }
+        return voxFile;
     }
 
     @Override
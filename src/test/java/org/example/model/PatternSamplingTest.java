@@ -0,0 +1,117 @@
+package org.example.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that both ways of selecting a pattern, the alias table for full domains and {@link Wave#patternAtWeight(int,
+ * double)} for reduced domains, draw patterns proportional to their weight and never draw a pattern without weight.
+ */
+class PatternSamplingTest {
+
+  private static final int SAMPLES = 1_000_000;
+  private static final double[] WEIGHTS = {0.5, 0, 2, 1, 0.25};
+
+  @Test
+  void aliasTableSamplesProportionalToWeights() {
+    AliasTable table = new AliasTable(WEIGHTS, WEIGHTS.length);
+    Random random = new Random(1);
+    int[] counts = new int[WEIGHTS.length];
+    for (int i = 0; i < SAMPLES; i++) {
+      counts[table.sample(random.nextDouble())]++;
+    }
+    assertProportional(WEIGHTS, counts);
+  }
+
+  @Test
+  void aliasTableOfRuleSetSamplesProportionalToPatternFrequency() {
+    //2x1x2 tiles, the empty tile gets no weight with avoidEmptyPattern 1
+    int[][] tiles = {
+        {-1, 1, 1, 1},
+        {2, 2, 3, 1}
+    };
+    int[][][] input = new int[4][2][8];
+    for (int z = 0; z < 4; z++) {
+      for (int y = 0; y < 2; y++) {
+        for (int x = 0; x < 8; x++) {
+          input[z][y][x] = tiles[z / 2][x / 2];
+        }
+      }
+    }
+    CompiledRuleSet ruleSet = CompiledRuleSet.compile(input, 2, false, 1);
+    List<Double> patternFrequency = ruleSet.getPatternFrequency();
+    double[] frequencies = patternFrequency.stream().mapToDouble(Double::doubleValue).toArray();
+    assertTrue(Arrays.stream(frequencies).anyMatch(frequency -> frequency == 0), "empty pattern without weight");
+
+    AliasTable table = ruleSet.getAliasTable();
+    assertEquals(frequencies.length, table.size());
+    Random random = new Random(2);
+    int[] counts = new int[frequencies.length];
+    for (int i = 0; i < SAMPLES; i++) {
+      counts[table.sample(random.nextDouble())]++;
+    }
+    assertProportional(frequencies, counts);
+  }
+
+  @Test
+  void patternAtWeightSamplesProportionalToPossiblePatterns() {
+    Wave wave = new Wave(1, WEIGHTS);
+    wave.fill(0, 0, WEIGHTS.length);
+    wave.ban(0, 3);
+    double[] expected = WEIGHTS.clone();
+    expected[3] = 0;
+
+    Random random = new Random(3);
+    int[] counts = new int[WEIGHTS.length];
+    for (int i = 0; i < SAMPLES; i++) {
+      counts[wave.patternAtWeight(0, random.nextDouble() * wave.sumOfWeights(0))]++;
+    }
+    assertProportional(expected, counts);
+  }
+
+  @Test
+  void patternAtWeightSamplesAcrossBitsetWords() {
+    //130 patterns span three words, every seventh pattern has no weight and every third is banned
+    double[] weights = new double[130];
+    for (int pattern = 0; pattern < weights.length; pattern++) {
+      weights[pattern] = pattern % 7 == 0 ? 0 : 1 + pattern % 5;
+    }
+    Wave wave = new Wave(1, weights);
+    wave.fill(0, 0, weights.length);
+    double[] expected = weights.clone();
+    for (int pattern = 0; pattern < weights.length; pattern += 3) {
+      wave.ban(0, pattern);
+      expected[pattern] = 0;
+    }
+
+    Random random = new Random(4);
+    int[] counts = new int[weights.length];
+    for (int i = 0; i < SAMPLES; i++) {
+      counts[wave.patternAtWeight(0, random.nextDouble() * wave.sumOfWeights(0))]++;
+    }
+    assertProportional(expected, counts);
+  }
+
+  /**
+   * Every sampled frequency has to be within 5 standard errors of its expected value, patterns without weight must
+   * never be drawn.
+   */
+  private static void assertProportional(double[] weights, int[] counts) {
+    double sum = Arrays.stream(weights).sum();
+    int samples = Arrays.stream(counts).sum();
+    for (int pattern = 0; pattern < weights.length; pattern++) {
+      double expected = weights[pattern] / sum;
+      if (expected == 0) {
+        assertEquals(0, counts[pattern], "pattern " + pattern + " has no weight");
+        continue;
+      }
+      double standardError = Math.sqrt(expected * (1 - expected) / samples);
+      assertEquals(expected, (double) counts[pattern] / samples, 5 * standardError, "frequency of pattern " + pattern);
+    }
+  }
+}